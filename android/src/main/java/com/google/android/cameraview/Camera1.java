@@ -17,6 +17,7 @@
 package com.google.android.cameraview;
 
 import android.annotation.SuppressLint;
+import android.graphics.ImageFormat;
 import android.graphics.Rect;
 import android.graphics.SurfaceTexture;
 import android.hardware.Camera;
@@ -32,7 +33,9 @@ import com.facebook.react.bridge.ReadableMap;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Properties;
 import java.util.Set;
@@ -73,6 +76,9 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
     private static final int FOCUS_METERING_AREA_WEIGHT_DEFAULT = 1000;
     private static final int DELAY_MILLIS_BEFORE_RESETTING_FOCUS = 3000;
 
+    // Preview buffers cycling between the camera and frame consumers
+    private static final int PREVIEW_BUFFER_COUNT = 3;
+
     private Handler mHandler = new Handler();
 
     private int mCameraId;
@@ -127,6 +133,35 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
 
     private SurfaceTexture mPreviewTexture;
 
+    private final Object mPreviewBufferLock = new Object();
+
+    // Camera the preview buffers are queued to, or null while the preview callback is off
+    private Camera mPreviewBufferCamera;
+
+    private int mPreviewBufferSize;
+
+    // Preview size the pooled frames describe; a new size with the same byte count still needs new frames
+    private int mPreviewBufferWidth;
+
+    private int mPreviewBufferHeight;
+
+    // Buffers of the current size that exist, wherever they currently are
+    private int mPreviewBufferCount;
+
+    // Buffers that are neither queued in the camera nor lent to a consumer
+    private final ArrayList<byte[]> mIdlePreviewBuffers = new ArrayList<>();
+
+    private final ArrayList<byte[]> mQueuedPreviewBuffers = new ArrayList<>();
+
+    private final IdentityHashMap<byte[], YuvFrame> mPreviewFrames = new IdentityHashMap<>();
+
+    private final YuvFrame.Recycler mPreviewFrameRecycler = new YuvFrame.Recycler() {
+        @Override
+        public void recycle(YuvFrame frame) {
+            recyclePreviewBuffer(frame);
+        }
+    };
+
     Camera1(Callback callback, PreviewImpl preview, Handler bgHandler) {
         super(callback, preview, bgHandler);
 
@@ -236,7 +271,7 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
             if (mCamera != null) {
                 mIsPreviewActive = false;
                 mCamera.stopPreview();
-                mCamera.setPreviewCallback(null);
+                stopPreviewCallback(mCamera);
             }
 
             releaseCamera();
@@ -276,7 +311,7 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
                 mIsPreviewActive = true;
                 mCamera.startPreview();
                 if (mIsScanning) {
-                    mCamera.setPreviewCallback(this);
+                    startPreviewCallback(mCamera);
                 }
             }
             catch(Exception e){
@@ -699,12 +734,12 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
                             camera.startPreview();
                             mIsPreviewActive = true;
                             if (mIsScanning) {
-                                camera.setPreviewCallback(Camera1.this);
+                                startPreviewCallback(camera);
                             }
                         } else {
                             camera.stopPreview();
                             mIsPreviewActive = false;
-                            camera.setPreviewCallback(null);
+                            stopPreviewCallback(camera);
                         }
 
                         isPictureCaptureInProgress.set(false);
@@ -1006,6 +1041,7 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
 
     private void releaseCamera() {
         if (mCamera != null) {
+            stopPreviewCallback(mCamera);
             mCamera.release();
             mCamera = null;
             mPictureSize = null;
@@ -1337,17 +1373,124 @@ class Camera1 extends CameraViewImpl implements MediaRecorder.OnInfoListener,
         mIsScanning = isScanning;
         if (isCameraOpened()) {
             if (mIsScanning) {
-                mCamera.setPreviewCallback(this);
+                startPreviewCallback(mCamera);
             } else {
-                mCamera.setPreviewCallback(null);
+                stopPreviewCallback(mCamera);
             }
         }
     }
 
+    /**
+     * Turns on the preview callback with a ring of {@link #PREVIEW_BUFFER_COUNT} buffers sized for the
+     * current preview size, so the framework does not allocate a new buffer for every frame.
+     */
+    private void startPreviewCallback(Camera camera) {
+        Camera.Size previewSize = mCameraParameters.getPreviewSize();
+        int bufferSize = previewSize.width * previewSize.height
+                * ImageFormat.getBitsPerPixel(mCameraParameters.getPreviewFormat()) / 8;
+        synchronized (mPreviewBufferLock) {
+            // Drops the camera's queue; buffers queued there become idle again
+            camera.setPreviewCallbackWithBuffer(null);
+            mIdlePreviewBuffers.addAll(mQueuedPreviewBuffers);
+            mQueuedPreviewBuffers.clear();
+            if (bufferSize != mPreviewBufferSize || previewSize.width != mPreviewBufferWidth
+                    || previewSize.height != mPreviewBufferHeight) {
+                // Buffers still lent out are discarded when they come back
+                for (byte[] buffer : mIdlePreviewBuffers) {
+                    mPreviewFrames.remove(buffer);
+                }
+                mIdlePreviewBuffers.clear();
+                mPreviewBufferSize = bufferSize;
+                mPreviewBufferWidth = previewSize.width;
+                mPreviewBufferHeight = previewSize.height;
+                mPreviewBufferCount = 0;
+            }
+            for (; mPreviewBufferCount < PREVIEW_BUFFER_COUNT; mPreviewBufferCount++) {
+                byte[] buffer = new byte[bufferSize];
+                YuvFrame frame = new YuvFrame(mPreviewFrameRecycler);
+                setNv21Planes(frame, buffer, previewSize.width, previewSize.height);
+                mPreviewFrames.put(buffer, frame);
+                mIdlePreviewBuffers.add(buffer);
+            }
+            camera.setPreviewCallbackWithBuffer(this);
+            for (byte[] buffer : mIdlePreviewBuffers) {
+                camera.addCallbackBuffer(buffer);
+            }
+            mQueuedPreviewBuffers.addAll(mIdlePreviewBuffers);
+            mIdlePreviewBuffers.clear();
+            mPreviewBufferCamera = camera;
+        }
+    }
+
+    private void stopPreviewCallback(Camera camera) {
+        synchronized (mPreviewBufferLock) {
+            camera.setPreviewCallbackWithBuffer(null);
+            mIdlePreviewBuffers.addAll(mQueuedPreviewBuffers);
+            mQueuedPreviewBuffers.clear();
+            mPreviewBufferCamera = null;
+        }
+    }
+
+    /**
+     * Gives a buffer back to the camera once its consumer is done with it. May be called from any thread.
+     */
+    private void recyclePreviewBuffer(YuvFrame frame) {
+        byte[] buffer = (byte[]) frame.getSource();
+        synchronized (mPreviewBufferLock) {
+            if (buffer.length != mPreviewBufferSize || frame.getWidth() != mPreviewBufferWidth
+                    || frame.getHeight() != mPreviewBufferHeight) {
+                mPreviewFrames.remove(buffer);
+                return;
+            }
+            if (mPreviewBufferCamera != null) {
+                try {
+                    mPreviewBufferCamera.addCallbackBuffer(buffer);
+                    mQueuedPreviewBuffers.add(buffer);
+                    return;
+                } catch (RuntimeException e) {
+                    Log.w("CAMERA_1::", "addCallbackBuffer failed", e);
+                }
+            }
+            mIdlePreviewBuffers.add(buffer);
+        }
+    }
+
     @Override
     public void onPreviewFrame(byte[] data, Camera camera) {
-        Camera.Size previewSize = mCameraParameters.getPreviewSize();
-        mCallback.onFramePreview(data, previewSize.width, previewSize.height, mDeviceOrientation);
+        if (data == null) {
+            return;
+        }
+        YuvFrame frame;
+        synchronized (mPreviewBufferLock) {
+            mQueuedPreviewBuffers.remove(data);
+            frame = mPreviewFrames.get(data);
+        }
+        if (frame == null) {
+            return;
+        }
+        if (mFrameDeliveryMode == Constants.FRAME_DELIVERY_PLANES) {
+            frame.reset(mDeviceOrientation);
+            mCallback.onFrameAvailable(frame);
+        } else {
+            // Consumers may keep the array, e.g. for an async task, so they get a copy and the pooled
+            // buffer goes straight back to the camera
+            byte[] copy = data.clone();
+            int width = frame.getWidth();
+            int height = frame.getHeight();
+            recyclePreviewBuffer(frame);
+            mCallback.onFramePreview(copy, width, height, mDeviceOrientation);
+        }
+    }
+
+    /**
+     * Exposes an NV21 buffer as planes: a full resolution Y plane followed by interleaved V/U samples.
+     */
+    private void setNv21Planes(YuvFrame frame, byte[] data, int width, int height) {
+        int frameSize = width * height;
+        ByteBuffer yPlane = ByteBuffer.wrap(data, 0, frameSize).slice();
+        ByteBuffer vPlane = ByteBuffer.wrap(data, frameSize, frameSize / 2).slice();
+        ByteBuffer uPlane = ByteBuffer.wrap(data, frameSize + 1, frameSize / 2 - 1).slice();
+        frame.set(data, yPlane, uPlane, vPlane, width, height, width, width, 2, mDeviceOrientation);
     }
 
     private void setUpMediaRecorder(String path, int maxDuration, int maxFileSize, boolean recordAudio, CamcorderProfile profile) {
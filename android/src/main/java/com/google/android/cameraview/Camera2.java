@@ -49,9 +49,11 @@ import com.facebook.react.bridge.ReadableMap;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Properties;
 import java.util.Set;
@@ -88,6 +90,16 @@ class Camera2 extends CameraViewImpl implements MediaRecorder.OnInfoListener, Me
 
     private static final int FOCUS_METERING_AREA_WEIGHT_DEFAULT = 1000;
 
+    /**
+     * Images the scan reader can have acquired at once.
+     */
+    private static final int SCAN_MAX_IMAGES = 4;
+
+    /**
+     * Frames consumers may hold at once. acquireLatestImage needs two free slots to skip stale images.
+     */
+    private static final int SCAN_FRAME_POOL_SIZE = SCAN_MAX_IMAGES - 2;
+
     private final CameraManager mCameraManager;
 
     private final CameraDevice.StateCallback mCameraDeviceCallback
@@ -205,6 +217,76 @@ class Camera2 extends CameraViewImpl implements MediaRecorder.OnInfoListener, Me
     };
 
 
+    private final ArrayDeque<YuvFrame> mFramePool = new ArrayDeque<>(SCAN_FRAME_POOL_SIZE);
+
+    // Reader each lent frame's image came from, guarded by mFramePool
+    private final IdentityHashMap<YuvFrame, ImageReader> mLentFrameReaders = new IdentityHashMap<>();
+
+    // Replaced scan readers that still have frames lent out, guarded by mFramePool
+    private final ArrayList<ImageReader> mRetiredScanReaders = new ArrayList<>();
+
+    private final YuvFrame.Recycler mFrameRecycler = new YuvFrame.Recycler() {
+
+        @Override
+        public void recycle(YuvFrame frame) {
+            ((Image) frame.getSource()).close();
+            ImageReader toClose = null;
+            synchronized (mFramePool) {
+                ImageReader reader = mLentFrameReaders.remove(frame);
+                if (reader != null && !mLentFrameReaders.containsValue(reader)
+                        && mRetiredScanReaders.remove(reader)) {
+                    toClose = reader;
+                }
+                mFramePool.push(frame);
+            }
+            if (toClose != null) {
+                toClose.close();
+            }
+        }
+
+    };
+
+    private final ImageReader.OnImageAvailableListener mOnScanImageAvailableListener
+            = new ImageReader.OnImageAvailableListener() {
+
+        @Override
+        public void onImageAvailable(ImageReader reader) {
+            if (mFrameDeliveryMode != Constants.FRAME_DELIVERY_PLANES) {
+                mOnImageAvailableListener.onImageAvailable(reader);
+                return;
+            }
+            YuvFrame frame;
+            synchronized (mFramePool) {
+                frame = mFramePool.poll();
+            }
+            if (frame == null) {
+                // Consumers still hold every frame; the image stays queued until the next callback
+                return;
+            }
+            Image image;
+            try {
+                image = reader.acquireLatestImage();
+            } catch (IllegalStateException e) {
+                image = null;
+            }
+            if (image == null) {
+                synchronized (mFramePool) {
+                    mFramePool.push(frame);
+                }
+                return;
+            }
+            synchronized (mFramePool) {
+                mLentFrameReaders.put(frame, reader);
+            }
+            Image.Plane[] planes = image.getPlanes();
+            frame.set(image, planes[0].getBuffer(), planes[1].getBuffer(), planes[2].getBuffer(),
+                    image.getWidth(), image.getHeight(), planes[0].getRowStride(),
+                    planes[1].getRowStride(), planes[1].getPixelStride(), mDisplayOrientation);
+            mCallback.onFrameAvailable(frame);
+        }
+
+    };
+
     private String mCameraId;
     private String _mCameraId;
 
@@ -234,6 +316,8 @@ class Camera2 extends CameraViewImpl implements MediaRecorder.OnInfoListener, Me
 
     private final SizeMap mPictureSizes = new SizeMap();
 
+    private final SizeMap mScanSizes = new SizeMap();
+
     private Size mPictureSize;
 
     private int mFacing;
@@ -282,6 +366,9 @@ class Camera2 extends CameraViewImpl implements MediaRecorder.OnInfoListener, Me
                 mAvailableCameras.remove(cameraId);
             }
         }, null);
+        for (int i = 0; i < SCAN_FRAME_POOL_SIZE; i++) {
+            mFramePool.push(new YuvFrame(mFrameRecycler));
+        }
         mImageFormat = mIsScanning ? ImageFormat.YUV_420_888 : ImageFormat.JPEG;
         mPreview.setCallback(new PreviewImpl.Callback() {
             @Override
@@ -327,7 +414,7 @@ class Camera2 extends CameraViewImpl implements MediaRecorder.OnInfoListener, Me
         }
 
         if (mScanImageReader != null) {
-            mScanImageReader.close();
+            retireScanImageReader(mScanImageReader);
             mScanImageReader = null;
         }
 
@@ -467,11 +554,15 @@ class Camera2 extends CameraViewImpl implements MediaRecorder.OnInfoListener, Me
             return false;
         }
         mAspectRatio = ratio;
-        prepareStillImageReader();
-        prepareScanImageReader();
-        if (mCaptureSession != null) {
+        // The session must stop targeting the readers before they are replaced
+        boolean restartSession = mCaptureSession != null;
+        if (restartSession) {
             mCaptureSession.close();
             mCaptureSession = null;
+        }
+        prepareStillImageReader();
+        prepareScanImageReader();
+        if (restartSession) {
             startCaptureSession();
         }
         return true;
@@ -691,6 +782,28 @@ class Camera2 extends CameraViewImpl implements MediaRecorder.OnInfoListener, Me
         return mIsScanning;
     }
 
+    @Override
+    void setAnalysisSize(Size size) {
+        if (size == null ? mAnalysisSize == null : size.equals(mAnalysisSize)) {
+            return;
+        }
+        super.setAnalysisSize(size);
+        if (mScanImageReader == null) {
+            // Not started yet; start() sizes the reader
+            return;
+        }
+        // The session must stop targeting the reader before it is replaced
+        boolean restartSession = mCaptureSession != null;
+        if (restartSession) {
+            mCaptureSession.close();
+            mCaptureSession = null;
+        }
+        prepareScanImageReader();
+        if (restartSession) {
+            startCaptureSession();
+        }
+    }
+
     @Override
     int getCameraOrientation() {
         return mCameraOrientation;
@@ -823,6 +936,10 @@ class Camera2 extends CameraViewImpl implements MediaRecorder.OnInfoListener, Me
         }
         mPictureSizes.clear();
         collectPictureSizes(mPictureSizes, map);
+        mScanSizes.clear();
+        for (android.util.Size size : map.getOutputSizes(ImageFormat.YUV_420_888)) {
+            mScanSizes.add(new Size(size.getWidth(), size.getHeight()));
+        }
         if (mPictureSize == null) {
             mPictureSize = mPictureSizes.sizes(mAspectRatio).last();
         }
@@ -856,12 +973,47 @@ class Camera2 extends CameraViewImpl implements MediaRecorder.OnInfoListener, Me
 
     private void prepareScanImageReader() {
         if (mScanImageReader != null) {
-            mScanImageReader.close();
+            retireScanImageReader(mScanImageReader);
+        }
+        Size scanSize = chooseScanSize();
+        mScanImageReader = ImageReader.newInstance(scanSize.getWidth(), scanSize.getHeight(),
+                ImageFormat.YUV_420_888, SCAN_MAX_IMAGES);
+        mScanImageReader.setOnImageAvailableListener(mOnScanImageAvailableListener, null);
+    }
+
+    /**
+     * Stops taking images from a scan reader and closes it once every frame lent from it has been released,
+     * since closing a reader invalidates the planes of its images.
+     */
+    private void retireScanImageReader(ImageReader reader) {
+        reader.setOnImageAvailableListener(null, null);
+        synchronized (mFramePool) {
+            if (mLentFrameReaders.containsValue(reader)) {
+                mRetiredScanReaders.add(reader);
+                return;
+            }
         }
+        reader.close();
+    }
+
+    /**
+     * Picks the smallest YUV size of the current aspect ratio whose shorter side covers the longer side of
+     * the analysis size, so the frame covers it whatever the device rotation. Without an analysis size, or
+     * when none is large enough, scanning uses the largest preview size.
+     */
+    private Size chooseScanSize() {
         Size largest = mPreviewSizes.sizes(mAspectRatio).last();
-        mScanImageReader = ImageReader.newInstance(largest.getWidth(), largest.getHeight(),
-                ImageFormat.YUV_420_888, 1);
-        mScanImageReader.setOnImageAvailableListener(mOnImageAvailableListener, null);
+        SortedSet<Size> sizes = mScanSizes.sizes(mAspectRatio);
+        if (mAnalysisSize == null || sizes == null) {
+            return largest;
+        }
+        int required = Math.max(mAnalysisSize.getWidth(), mAnalysisSize.getHeight());
+        for (Size size : sizes) {
+            if (Math.min(size.getWidth(), size.getHeight()) >= required) {
+                return size.compareTo(largest) < 0 ? size : largest;
+            }
+        }
+        return largest;
     }
 
     /**
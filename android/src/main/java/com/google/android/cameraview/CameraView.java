@@ -251,6 +251,8 @@ public class CameraView extends FrameLayout {
         state.zoom = getZoom();
         state.whiteBalance = getWhiteBalance();
         state.scanning = getScanning();
+        state.frameDeliveryMode = getFrameDeliveryMode();
+        state.analysisSize = getAnalysisSize();
         state.pictureSize = getPictureSize();
         return state;
     }
@@ -273,6 +275,8 @@ public class CameraView extends FrameLayout {
         setZoom(ss.zoom);
         setWhiteBalance(ss.whiteBalance);
         setScanning(ss.scanning);
+        setFrameDeliveryMode(ss.frameDeliveryMode);
+        setAnalysisSize(ss.analysisSize);
         setPictureSize(ss.pictureSize);
     }
 
@@ -583,6 +587,25 @@ public class CameraView extends FrameLayout {
 
     public boolean getScanning() { return mImpl.getScanning(); }
 
+    /**
+     * Chooses how scan frames are delivered: {@link Constants#FRAME_DELIVERY_BYTES} copies them into a
+     * {@code byte[]} for {@link Callback#onFramePreview}, {@link Constants#FRAME_DELIVERY_PLANES} lends the
+     * camera's YUV planes to {@link Callback#onFrameAvailable} without copying.
+     */
+    public void setFrameDeliveryMode(int frameDeliveryMode) { mImpl.setFrameDeliveryMode(frameDeliveryMode); }
+
+    public int getFrameDeliveryMode() { return mImpl.getFrameDeliveryMode(); }
+
+    /**
+     * Sets the minimum size scan frames need for analysis, or {@code null} to scan at the preview size.
+     * Camera2 then picks the smallest YUV output size that covers it in either orientation; Camera1 always
+     * scans at the preview size.
+     */
+    public void setAnalysisSize(@Nullable Size size) { mImpl.setAnalysisSize(size); }
+
+    @Nullable
+    public Size getAnalysisSize() { return mImpl.getAnalysisSize(); }
+
     /**
      * Take a picture. The result will be returned to
      * {@link Callback#onPictureTaken(CameraView, byte[], int)}.
@@ -680,6 +703,17 @@ public class CameraView extends FrameLayout {
             }
         }
 
+        @Override
+        public void onFrameAvailable(YuvFrame frame) {
+            try {
+                for (Callback callback : mCallbacks) {
+                    callback.onFrameAvailable(CameraView.this, frame);
+                }
+            } finally {
+                frame.release();
+            }
+        }
+
         @Override
         public void onMountError() {
             for (Callback callback : mCallbacks) {
@@ -716,6 +750,10 @@ public class CameraView extends FrameLayout {
 
         boolean scanning;
 
+        int frameDeliveryMode;
+
+        Size analysisSize;
+
         Size pictureSize;
 
         @SuppressWarnings("WrongConstant")
@@ -731,6 +769,8 @@ public class CameraView extends FrameLayout {
             zoom = source.readFloat();
             whiteBalance = source.readInt();
             scanning = source.readByte() != 0;
+            frameDeliveryMode = source.readInt();
+            analysisSize = source.readParcelable(loader);
             pictureSize = source.readParcelable(loader);
         }
 
@@ -751,6 +791,8 @@ public class CameraView extends FrameLayout {
             out.writeFloat(zoom);
             out.writeInt(whiteBalance);
             out.writeByte((byte) (scanning ? 1 : 0));
+            out.writeInt(frameDeliveryMode);
+            out.writeParcelable(analysisSize, flags);
             out.writeParcelable(pictureSize, flags);
         }
 
@@ -811,9 +853,27 @@ public class CameraView extends FrameLayout {
         public void onVideoRecorded(CameraView cameraView, String path, int videoOrientation, int deviceOrientation) {
         }
 
+        /**
+         * Called for every scan frame when the frame delivery mode is {@link Constants#FRAME_DELIVERY_BYTES}.
+         * The array belongs to the receiver: it is not reused for later frames, so it may be kept after this
+         * returns, but every callback receives the same array and must not modify it.
+         *
+         * @param cameraView The associated {@link CameraView}.
+         * @param data       The frame, NV21 from Camera1 or the first plane from Camera2.
+         */
         public void onFramePreview(CameraView cameraView, byte[] data, int width, int height, int orientation) {
         }
 
+        /**
+         * Called for every scan frame when the frame delivery mode is {@link Constants#FRAME_DELIVERY_PLANES}.
+         * The frame is released when this returns; call {@link YuvFrame#retain()} to keep it longer.
+         *
+         * @param cameraView The associated {@link CameraView}.
+         * @param frame      Frame borrowed from the camera.
+         */
+        public void onFrameAvailable(CameraView cameraView, YuvFrame frame) {
+        }
+
         public void onMountError(CameraView cameraView) {}
     }
 
@@ -41,6 +41,10 @@ abstract class CameraViewImpl {
     // by itself.
     protected final Handler mBgHandler;
 
+    protected volatile int mFrameDeliveryMode = Constants.FRAME_DELIVERY_BYTES;
+
+    protected Size mAnalysisSize;
+
     CameraViewImpl(Callback callback, PreviewImpl preview, Handler bgHandler) {
         mCallback = callback;
         mPreview = preview;
@@ -128,6 +132,26 @@ abstract class CameraViewImpl {
 
     abstract boolean getScanning();
 
+    void setFrameDeliveryMode(int frameDeliveryMode) {
+        mFrameDeliveryMode = frameDeliveryMode;
+    }
+
+    int getFrameDeliveryMode() {
+        return mFrameDeliveryMode;
+    }
+
+    /**
+     * Requests the smallest scan frame size that still covers {@code size}, independent of the preview size.
+     * Implementations whose scan frames are tied to the preview ignore it.
+     */
+    void setAnalysisSize(Size size) {
+        mAnalysisSize = size;
+    }
+
+    Size getAnalysisSize() {
+        return mAnalysisSize;
+    }
+
     abstract public void resumePreview();
 
     abstract public void pausePreview();
@@ -148,6 +172,8 @@ abstract class CameraViewImpl {
 
         void onFramePreview(byte[] data, int width, int height, int orientation);
 
+        void onFrameAvailable(YuvFrame frame);
+
         void onMountError();
     }
 
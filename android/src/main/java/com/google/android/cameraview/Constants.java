@@ -44,4 +44,9 @@ public interface Constants {
     int ORIENTATION_DOWN = 2;
     int ORIENTATION_LEFT = 3;
     int ORIENTATION_RIGHT = 4;
+
+    // Scan frames as a copied byte[] through onFramePreview
+    int FRAME_DELIVERY_BYTES = 0;
+    // Scan frames as pooled YuvFrame planes through onFrameAvailable
+    int FRAME_DELIVERY_PLANES = 1;
 }
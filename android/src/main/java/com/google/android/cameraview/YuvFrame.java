@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.cameraview;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A YUV 4:2:0 preview frame whose planes are borrowed from the camera.
+ *
+ * <p>Frames are reference counted. A consumer that keeps a frame beyond
+ * {@link CameraView.Callback#onFrameAvailable(CameraView, YuvFrame)} must {@link #retain()} it and
+ * {@link #release()} it when done; the planes are handed back to the camera once the last reference is
+ * released and must not be read afterwards.</p>
+ */
+public class YuvFrame {
+
+    interface Recycler {
+        void recycle(YuvFrame frame);
+    }
+
+    private final Recycler mRecycler;
+    private final AtomicInteger mRefCount = new AtomicInteger();
+
+    private ByteBuffer mYPlane;
+    private ByteBuffer mUPlane;
+    private ByteBuffer mVPlane;
+    private int mWidth;
+    private int mHeight;
+    private int mYRowStride;
+    private int mUvRowStride;
+    private int mUvPixelStride;
+    private int mOrientation;
+
+    // Source the planes were borrowed from, e.g. an Image or a preview buffer
+    private Object mSource;
+
+    YuvFrame(Recycler recycler) {
+        mRecycler = recycler;
+    }
+
+    /**
+     * Points this frame at a new set of planes and takes the initial reference.
+     */
+    void set(Object source, ByteBuffer yPlane, ByteBuffer uPlane, ByteBuffer vPlane, int width, int height,
+             int yRowStride, int uvRowStride, int uvPixelStride, int orientation) {
+        mSource = source;
+        mYPlane = yPlane;
+        mUPlane = uPlane;
+        mVPlane = vPlane;
+        mWidth = width;
+        mHeight = height;
+        mYRowStride = yRowStride;
+        mUvRowStride = uvRowStride;
+        mUvPixelStride = uvPixelStride;
+        mOrientation = orientation;
+        mRefCount.set(1);
+    }
+
+    /**
+     * Reuses the current planes for a new frame written into the same memory.
+     */
+    void reset(int orientation) {
+        mOrientation = orientation;
+        mRefCount.set(1);
+    }
+
+    Object getSource() {
+        return mSource;
+    }
+
+    public ByteBuffer getYPlane() {
+        return mYPlane;
+    }
+
+    public ByteBuffer getUPlane() {
+        return mUPlane;
+    }
+
+    public ByteBuffer getVPlane() {
+        return mVPlane;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public int getYRowStride() {
+        return mYRowStride;
+    }
+
+    public int getUvRowStride() {
+        return mUvRowStride;
+    }
+
+    public int getUvPixelStride() {
+        return mUvPixelStride;
+    }
+
+    public int getOrientation() {
+        return mOrientation;
+    }
+
+    public void retain() {
+        mRefCount.incrementAndGet();
+    }
+
+    public void release() {
+        if (mRefCount.decrementAndGet() == 0) {
+            mRecycler.recycle(this);
+        }
+    }
+}
@@ -12,6 +12,7 @@ import com.facebook.react.uimanager.NativeViewHierarchyManager;
 import com.facebook.react.uimanager.UIBlock;
 import com.facebook.react.uimanager.UIManagerModule;
 import com.google.android.cameraview.AspectRatio;
+import org.reactnative.camera.model.ModelBenchmark;
 import org.reactnative.camera.utils.ScopedContext;
 import com.google.android.cameraview.Size;
 
@@ -270,4 +271,44 @@ public class CameraModule extends ReactContextBaseJavaModule {
       }
       promise.resolve(false);
   }
+
+  @ReactMethod
+  public void getModelStats(final int viewTag, final Promise promise) {
+      final ReactApplicationContext context = getReactApplicationContext();
+      UIManagerModule uiManager = context.getNativeModule(UIManagerModule.class);
+      uiManager.addUIBlock(new UIBlock() {
+          @Override
+          public void execute(NativeViewHierarchyManager nativeViewHierarchyManager) {
+              final RNCameraView cameraView;
+
+              try {
+                  cameraView = (RNCameraView) nativeViewHierarchyManager.resolveView(viewTag);
+              } catch (Exception e) {
+                  promise.reject("E_CAMERA_BAD_VIEWTAG", "getModelStats: Expected a Camera component");
+                  return;
+              }
+              promise.resolve(cameraView.getModelStats());
+          }
+      });
+  }
+
+  @ReactMethod
+  public void benchmarkModel(final ReadableMap params, final Promise promise) {
+      final ReactApplicationContext context = getReactApplicationContext();
+      if (!params.hasKey("file")) {
+          promise.reject("E_MODEL_MISSING", "benchmarkModel: Expected a model file");
+          return;
+      }
+      // Inference blocks for the whole sweep, so keep it off the module thread
+      new Thread(new Runnable() {
+          @Override
+          public void run() {
+              try {
+                  promise.resolve(new ModelBenchmark(context, params).run());
+              } catch (Exception e) {
+                  promise.reject("E_MODEL_BENCHMARK_FAILED", e.getMessage(), e);
+              }
+          }
+      }, "RNCamera-Model-Benchmark").start();
+  }
 }
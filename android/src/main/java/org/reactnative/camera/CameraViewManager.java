@@ -1,6 +1,7 @@
 package org.reactnative.camera;
 
 import androidx.annotation.Nullable;
+import com.facebook.react.bridge.Dynamic;
 import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.common.MapBuilder;
@@ -10,7 +11,10 @@ import com.facebook.react.uimanager.annotations.ReactProp;
 import com.google.android.cameraview.AspectRatio;
 import com.google.android.cameraview.Size;
 
+import org.reactnative.camera.model.ModelOptions;
+
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -18,7 +22,8 @@ public class CameraViewManager extends ViewGroupManager<RNCameraView> {
   public enum Events {
     EVENT_CAMERA_READY("onCameraReady"),
     EVENT_ON_MOUNT_ERROR("onMountError"),
-    EVENT_ON_MODEL_PROCESSED("onModelProcessed");
+    EVENT_ON_MODEL_PROCESSED("onModelProcessed"),
+    EVENT_ON_MODEL_READY("onModelReady");
 
     private final String mName;
 
@@ -121,9 +126,16 @@ public class CameraViewManager extends ViewGroupManager<RNCameraView> {
   }
 
   @ReactProp(name = "modelParams")
-  public void setModelParams(RNCameraView view, ReadableMap model) {
-    String modelFile = model.getString("file");
-    String labelFile = model.getString("label");
-    view.setModelFile(modelFile, labelFile);
+  public void setModelParams(RNCameraView view, Dynamic model) {
+    switch (model.getType()) {
+      case Array:
+        view.setModelParams(ModelOptions.fromReadableArray(model.asArray()));
+        break;
+      case Map:
+        view.setModelParams(Collections.singletonList(ModelOptions.fromReadableMap(model.asMap())));
+        break;
+      default:
+        view.setModelParams(Collections.<ModelOptions>emptyList());
+    }
   }
 }
@@ -3,61 +3,67 @@ package org.reactnative.camera;
 import android.Manifest;
 import android.annotation.SuppressLint;
 import android.content.pm.PackageManager;
-import android.content.res.AssetFileDescriptor;
-import android.graphics.Bitmap;
 import android.graphics.Color;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
-import android.view.TextureView;
 import android.view.View;
 
 import androidx.core.content.ContextCompat;
 
+import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.LifecycleEventListener;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.uimanager.ThemedReactContext;
 import com.google.android.cameraview.CameraView;
-
-import org.reactnative.camera.tasks.ModelProcessorAsyncTask;
-import org.reactnative.camera.tasks.ModelProcessorAsyncTaskDelegate;
+import com.google.android.cameraview.Constants;
+import com.google.android.cameraview.YuvFrame;
+
+import org.reactnative.camera.model.FrameThrottle;
+import org.reactnative.camera.model.LoadedModel;
+import org.reactnative.camera.model.ModelLoader;
+import org.reactnative.camera.model.ModelOptions;
+import org.reactnative.camera.model.ModelPipeline;
+import org.reactnative.camera.model.ModelResult;
+import org.reactnative.camera.tasks.ModelProcessorDelegate;
+import org.reactnative.camera.tasks.ModelProcessorWorker;
 import org.reactnative.camera.utils.ImageDimensions;
-import org.tensorflow.lite.Interpreter;
-import org.tensorflow.lite.Tensor;
-import org.tensorflow.lite.DataType;
+import org.reactnative.camera.utils.PreviewLayout;
 
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.MappedByteBuffer;
-import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.List;
 
 
 
 public class RNCameraView extends CameraView implements LifecycleEventListener,
-    ModelProcessorAsyncTaskDelegate {
+    ModelProcessorDelegate {
+  private static final String TAG = "RNCameraView";
+
   private ThemedReactContext mThemedReactContext;
   private Boolean mPlaySoundOnCapture = false;
   private boolean mIsPaused = false;
   private boolean mIsNew = true;
-  public volatile boolean modelProcessorTaskLock = false;
 
   // Scanning-related properties
-  private String mModelFile;
-  private String mLabelFile;
-  private final Interpreter.Options options = new Interpreter.Options();
-  private Interpreter mModelProcessor;
-  private ByteBuffer mModelInput;
-  private int[] intValues;
-  private int inputSize;
-  private static final int NUM_THREADS = 1;
-  private boolean mShouldProcessModel = false;
+  private List<ModelOptions> mModelOptions = Collections.emptyList();
+  private ModelPipeline mPipeline;
+  // Options of the pipeline being loaded in the background while mModelLoading is set
+  private List<ModelOptions> mLoadingOptions;
+  // Bumped whenever a pending load must be discarded; only touched on the UI thread
+  private int mModelGeneration;
+  private boolean mModelLoading;
+  private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+  private final ModelProcessorWorker mModelWorker;
+  private volatile FrameThrottle mThrottle;
+  private volatile boolean mShouldProcessModel = false;
   private int mPaddingX;
   private int mPaddingY;
 
   public RNCameraView(ThemedReactContext themedReactContext) {
     super(themedReactContext, true);
     mThemedReactContext = themedReactContext;
+    mModelWorker = new ModelProcessorWorker(this);
     themedReactContext.addLifecycleEventListener(this);
 
     addCallback(new Callback() {
@@ -71,53 +77,23 @@ public class RNCameraView extends CameraView implements LifecycleEventListener,
         RNCameraViewHelper.emitMountErrorEvent(cameraView, "Camera view threw an error - component could not be rendered.");
       }
       @Override
-      public void onFramePreview(CameraView cameraView, byte[] data, int width, int height, int rotation) {
-        int correctRotation = RNCameraViewHelper.getCorrectCameraRotation(rotation, getFacing(), getCameraOrientation());
-        boolean willCallModelTask = mShouldProcessModel && !modelProcessorTaskLock && cameraView instanceof ModelProcessorAsyncTaskDelegate;
-        if (!willCallModelTask) {
+      public void onFrameAvailable(CameraView cameraView, YuvFrame frame) {
+        if (!mShouldProcessModel) {
           return;
         }
 
-        if (data.length < (1.5 * width * height)) {
-            return;
+        final long arrivalNs = System.nanoTime();
+        FrameThrottle throttle = mThrottle;
+        if (throttle != null && !throttle.shouldAccept(arrivalNs)) {
+          mModelWorker.skip();
+          return;
         }
 
-        if (willCallModelTask) {
-          modelProcessorTaskLock = true;
-          Log.d("willCallModelTask", "Called");
-          getImageData((TextureView) cameraView.getView());
-          ModelProcessorAsyncTaskDelegate delegate = (ModelProcessorAsyncTaskDelegate) cameraView;
-          new ModelProcessorAsyncTask(delegate, mModelProcessor, mModelInput, mThemedReactContext, mLabelFile, width, height, correctRotation).execute();
-        }
+        int correctRotation = RNCameraViewHelper.getCorrectCameraRotation(frame.getOrientation(), getFacing(), getCameraOrientation());
+        mModelWorker.offer(frame, correctRotation, getFacing(), arrivalNs);
       }
     });
-  }
-
-  private void getImageData(TextureView view) {
-    Bitmap bitmap = view.getBitmap(this.inputSize, this.inputSize);
-    bitmap = Bitmap.createScaledBitmap(bitmap, this.inputSize, this.inputSize, true);
-    if (bitmap == null || mModelInput == null){
-      return;
-    }
-      final float imageMean2= 123.68f;
-      final float imageMean1= 116.779f;
-      final float imageMean3= 103.939f;
-      final float imageStd2= 58.393f;
-      final float imageStd1= 57.12f;
-      final float imageStd3= 57.375f;
-
-intValues = new int[this.inputSize* this.inputSize];
-    bitmap.getPixels(intValues, 0, bitmap.getWidth(), 0, 0, bitmap.getWidth(), bitmap.getHeight());
-    mModelInput.rewind();
-    int pixel = 0;
-    for (int i = 0; i < this.inputSize; ++i) {
-      for (int j = 0; j < this.inputSize; ++j) {
-        int pixelValue = intValues[pixel++];
-          mModelInput.putFloat((((pixelValue >> 16) & 0xFF) - imageMean1) / imageStd1);
-          mModelInput.putFloat((((pixelValue >> 8) & 0xFF) - imageMean2) / imageStd2);
-          mModelInput.putFloat(((pixelValue & 0xFF) - imageMean3) / imageStd3);
-      }
-    }
+    setFrameDeliveryMode(Constants.FRAME_DELIVERY_PLANES);
   }
 
   @Override
@@ -154,6 +130,8 @@ intValues = new int[this.inputSize* this.inputSize];
     int paddingY = (int) ((height - correctHeight) / 2);
     mPaddingX = paddingX;
     mPaddingY = paddingY;
+    mModelWorker.setPreviewLayout(new PreviewLayout((int) width, (int) height, mPaddingX, mPaddingY,
+        correctWidth, correctHeight, getResources().getDisplayMetrics().density));
     preview.layout(paddingX, paddingY, correctWidth + paddingX, correctHeight + paddingY);
   }
 
@@ -167,67 +145,152 @@ intValues = new int[this.inputSize* this.inputSize];
     mPlaySoundOnCapture = playSoundOnCapture;
   }
 
-  private void setupModelProcessor() {
-    int numBytesPerChannel;
-    try {
-      mModelProcessor = new Interpreter(loadModelFile());
-      Tensor tensor = mModelProcessor.getInputTensor(0);
-      this.inputSize = tensor.shape()[1];
-      int inputChannels = tensor.shape()[3];
-      int bytePerChannel = tensor.dataType() == DataType.UINT8 ? 1 : 4;
-
-      mModelInput = ByteBuffer.allocateDirect(1 * this.inputSize * this.inputSize *  inputChannels * bytePerChannel);
-
-      mModelInput.order(ByteOrder.nativeOrder());
-      mModelProcessor.setNumThreads(NUM_THREADS);
-    } catch(Exception e) {
-          Log.d("EXCEPTION!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!", "Called");
+  /**
+   * Builds the pipeline for {@code options} in the background and swaps it in between frames once it is ready.
+   * Models the current pipeline already runs are carried over rather than loaded again. The current pipeline
+   * keeps running until then; the frame in flight finishes on it and it is closed afterwards.
+   */
+  private void setupModelProcessor(final List<ModelOptions> options) {
+    final int generation = ++mModelGeneration;
+    mModelLoading = true;
+    LoadedModel[] reuse = new LoadedModel[options.size()];
+    if (mPipeline != null) {
+      boolean[] taken = new boolean[mPipeline.size()];
+      for (int i = 0; i < reuse.length; ++i) {
+        for (int j = 0; j < taken.length; ++j) {
+          if (!taken[j] && mPipeline.get(j).getOptions().isSameModel(options.get(i))) {
+            taken[j] = true;
+            reuse[i] = mPipeline.get(j).retain();
+            break;
+          }
+        }
+      }
     }
-  }
+    ModelLoader.load(mThemedReactContext, options, reuse, new ModelLoader.Callback() {
+      @Override
+      public void onModelLoaded(final ModelPipeline pipeline, final double loadMs, final double warmupMs) {
+        mMainHandler.post(new Runnable() {
+          @Override
+          public void run() {
+            if (generation != mModelGeneration) {
+              pipeline.close();
+              return;
+            }
+            mModelLoading = false;
+            mPipeline = pipeline;
+            applyRois(pipeline);
+            setAnalysisSize(pipeline.getAnalysisSize(mModelOptions));
+            mModelWorker.setPipeline(pipeline);
+            WritableMap info = pipeline.describe();
+            info.putDouble("loadMs", loadMs);
+            info.putDouble("warmupMs", warmupMs);
+            RNCameraViewHelper.emitModelReadyEvent(RNCameraView.this, info);
+          }
+        });
+      }
 
-  private MappedByteBuffer loadModelFile() throws IOException {
-    AssetFileDescriptor fileDescriptor = mThemedReactContext.getAssets().openFd(mModelFile);
-    FileInputStream inputStream = new FileInputStream(fileDescriptor.getFileDescriptor());
-    FileChannel fileChannel = inputStream.getChannel();
-    long startOffset = fileDescriptor.getStartOffset();
-    long declaredLength = fileDescriptor.getDeclaredLength();
-    return fileChannel.map(FileChannel.MapMode.READ_ONLY, startOffset, declaredLength);
+      @Override
+      public void onModelLoadFailed(Exception e) {
+        Log.e(TAG, "Failed to load models", e);
+        mMainHandler.post(new Runnable() {
+          @Override
+          public void run() {
+            if (generation == mModelGeneration) {
+              mModelLoading = false;
+            }
+          }
+        });
+      }
+    });
   }
 
-  public void setModelFile(String modelFile, String labelFile) {
-    this.mModelFile = modelFile;
-    this.mLabelFile = labelFile;
+  /**
+   * @param options one entry per model to run on each frame; the first one also sets the frame rate.
+   */
+  public void setModelParams(List<ModelOptions> options) {
+    this.mModelOptions = options;
+    FrameThrottle throttle = options.isEmpty() ? null : new FrameThrottle(mThemedReactContext, options.get(0));
+    mThrottle = throttle;
+    mModelWorker.setThrottle(throttle);
     loadModel();
   }
+
   private void loadModel() {
-    boolean shouldProcessModel = (this.mModelFile != null && this.mLabelFile != null);
-    if (shouldProcessModel && mModelProcessor == null) {
-      setupModelProcessor();
+    boolean shouldProcessModel = !mModelOptions.isEmpty();
+    for (ModelOptions options : mModelOptions) {
+      shouldProcessModel &= options.getModelFile() != null && options.getLabelFile() != null;
+    }
+    if (!shouldProcessModel) {
+      unloadModel();
+    } else if (mPipeline != null && isSameModels(mPipeline.getOptions(), mModelOptions)) {
+      // Only throttling, analysis size or regions of interest changed; drop any load meant to replace this pipeline
+      mModelGeneration++;
+      mModelLoading = false;
+      applyRois(mPipeline);
+      setAnalysisSize(mPipeline.getAnalysisSize(mModelOptions));
+    } else if (!mModelLoading || !isSameModels(mLoadingOptions, mModelOptions)) {
+      mLoadingOptions = mModelOptions;
+      setupModelProcessor(mModelOptions);
     }
     this.mShouldProcessModel = shouldProcessModel;
     setScanning(mShouldProcessModel);
+  }
 
+  private void applyRois(ModelPipeline pipeline) {
+    for (int i = 0; i < pipeline.size(); ++i) {
+      pipeline.get(i).setRoi(mModelOptions.get(i).getRoi());
+    }
+  }
+
+  /**
+   * @return whether both lists describe the same models on the same schedules.
+   */
+  private static boolean isSameModels(List<ModelOptions> a, List<ModelOptions> b) {
+    if (a.size() != b.size()) {
+      return false;
+    }
+    for (int i = 0; i < a.size(); ++i) {
+      if (!a.get(i).isSameModel(b.get(i)) || a.get(i).getEveryNFrames() != b.get(i).getEveryNFrames()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void unloadModel() {
+    // Hands the interpreters back to the model cache once the frame in flight, if any, is done
+    mModelWorker.setPipeline(null);
+    mPipeline = null;
+    // A load still in progress closes its pipeline when it completes
+    mModelGeneration++;
+    mModelLoading = false;
   }
 
   @Override
-  public void onModelProcessed(WritableMap[] data, int sourceWidth, int sourceHeight, int sourceRotation) {
+  public void onModelProcessed(ModelResult[] results, String[] files, ImageDimensions dimensions) {
     if (!mShouldProcessModel) {
       return;
     }
-    ImageDimensions dimensions = new ImageDimensions(sourceWidth, sourceHeight, sourceRotation, getFacing());
-
-    RNCameraViewHelper.emitModelProcessedEvent(this, data, dimensions);
+    RNCameraViewHelper.emitModelProcessedEvent(this, results, files, dimensions, mModelWorker.getFrameStats());
   }
 
 
-  @Override
-  public void onModelProcessorTaskCompleted() {
-    modelProcessorTaskLock = false;
+  /**
+   * @return frame counters and rolling per-stage latency of the model pipeline.
+   */
+  public WritableMap getModelStats() {
+    WritableMap stats = Arguments.createMap();
+    stats.putMap("frames", mModelWorker.getFrameStats());
+    stats.putMap("stages", mModelWorker.getStats().toWritableMap());
+    FrameThrottle throttle = mThrottle;
+    stats.putDouble("frameIntervalMs", throttle != null ? throttle.getIntervalMs() : 0);
+    return stats;
   }
 
   @Override
   public void onHostResume() {
     if (hasCameraPermissions()) {
+      mModelWorker.start();
       mBgHandler.post(new Runnable() {
         @Override
         public void run() {
@@ -245,6 +308,7 @@ intValues = new int[this.inputSize* this.inputSize];
 
   @Override
   public void onHostPause() {
+    mModelWorker.stop();
     if (!mIsPaused && isCameraOpened()) {
       mIsPaused = true;
       stop();
@@ -253,6 +317,8 @@ intValues = new int[this.inputSize* this.inputSize];
 
   @Override
   public void onHostDestroy() {
+    mModelWorker.quit();
+    unloadModel();
     stop();
     mThemedReactContext.removeLifecycleEventListener(this);
 
@@ -22,6 +22,8 @@ import com.google.zxing.Result;
 import org.reactnative.camera.events.CameraMountErrorEvent;
 import org.reactnative.camera.events.CameraReadyEvent;
 import org.reactnative.camera.events.ModelProcessedEvent;
+import org.reactnative.camera.events.ModelReadyEvent;
+import org.reactnative.camera.model.ModelResult;
 import org.reactnative.camera.utils.ImageDimensions;
 
 import java.nio.ByteBuffer;
@@ -196,10 +198,24 @@ public class RNCameraViewHelper {
     });
   }
 
+  public static void emitModelReadyEvent(final ViewGroup view, final WritableMap info) {
+
+    final ReactContext reactContext = (ReactContext) view.getContext();
+    reactContext.runOnNativeModulesQueueThread(new Runnable() {
+      @Override
+      public void run() {
+        ModelReadyEvent event = ModelReadyEvent.obtain(view.getId(), info);
+        reactContext.getNativeModule(UIManagerModule.class).getEventDispatcher().dispatchEvent(event);
+      }
+    });
+  }
+
   public static void emitModelProcessedEvent(
           ViewGroup view,
-          WritableMap[] data,
-          ImageDimensions dimensions) {
+          ModelResult[] results,
+          String[] files,
+          ImageDimensions dimensions,
+          WritableMap frameStats) {
     float density = view.getResources().getDisplayMetrics().density;
 
     double scaleX = (double) view.getWidth() / (dimensions.getWidth() * density);
@@ -207,10 +223,12 @@ public class RNCameraViewHelper {
 
     ModelProcessedEvent event = ModelProcessedEvent.obtain(
             view.getId(),
-            data,
+            results,
+            files,
             dimensions,
             scaleX,
-            scaleY
+            scaleY,
+            frameStats
     );
 
     ReactContext reactContext = (ReactContext) view.getContext();
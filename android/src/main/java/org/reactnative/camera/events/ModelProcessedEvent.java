@@ -1,24 +1,19 @@
 package org.reactnative.camera.events;
 
+import androidx.annotation.VisibleForTesting;
 import androidx.core.util.Pools;
 
 import com.facebook.react.bridge.Arguments;
-import com.facebook.react.bridge.ReadableArray;
-import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
-import com.facebook.react.bridge.WritableNativeMap;
 import com.facebook.react.uimanager.events.Event;
 import com.facebook.react.uimanager.events.RCTEventEmitter;
 
 import org.reactnative.camera.CameraViewManager;
+import org.reactnative.camera.model.ModelResult;
 import org.reactnative.camera.utils.ImageDimensions;
 
-import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
+import java.util.Arrays;
 
 
 public class ModelProcessedEvent extends Event<ModelProcessedEvent> {
@@ -29,36 +24,88 @@ public class ModelProcessedEvent extends Event<ModelProcessedEvent> {
 
     private double mScaleX;
     private double mScaleY;
-    private WritableMap[] mData;
+    private ModelResult[] mResults;
+    private String[] mFiles;
+    private WritableMap mFrameStats;
     private ImageDimensions mImageDimensions;
 
     private ModelProcessedEvent() {}
 
     public static ModelProcessedEvent obtain(
             int viewTag,
-            WritableMap[] data,
+            ModelResult[] results,
+            String[] files,
             ImageDimensions dimensions,
             double scaleX,
-            double scaleY) {
+            double scaleY,
+            WritableMap frameStats) {
         ModelProcessedEvent event = EVENTS_POOL.acquire();
         if (event == null) {
             event = new ModelProcessedEvent();
         }
-        event.init(viewTag, data, dimensions, scaleX, scaleY);
+        event.init(viewTag, results, files, dimensions, scaleX, scaleY, frameStats);
         return event;
     }
 
     private void init(
             int viewTag,
-            WritableMap[] data,
+            ModelResult[] results,
+            String[] files,
             ImageDimensions dimensions,
             double scaleX,
-            double scaleY) {
+            double scaleY,
+            WritableMap frameStats) {
         super.init(viewTag);
-        mData = data;
+        mResults = results;
+        mFiles = files;
         mImageDimensions = dimensions;
         mScaleX = scaleX;
         mScaleY = scaleY;
+        mFrameStats = frameStats;
+    }
+
+    /**
+     * Only the newest result per view is worth delivering: when several are waiting for the JS thread the
+     * dispatcher keeps the most recent one and drops the rest. Models that did not run, or did not change, on the
+     * newest frame keep their result from the event it replaces, so no model's result is lost.
+     */
+    @Override
+    public boolean canCoalesce() {
+        return true;
+    }
+
+    @Override
+    public short getCoalescingKey() {
+        return 0;
+    }
+
+    @Override
+    public ModelProcessedEvent coalesce(ModelProcessedEvent otherEvent) {
+        ModelProcessedEvent newer = getTimestampMs() >= otherEvent.getTimestampMs() ? this : otherEvent;
+        ModelProcessedEvent older = newer == this ? otherEvent : this;
+        // Results from another set of models, before a reload, no longer apply
+        if (Arrays.equals(newer.mFiles, older.mFiles)) {
+            for (int i = 0; i < newer.mResults.length; i++) {
+                if (newer.mResults[i] == null) {
+                    newer.mResults[i] = older.mResults[i];
+                }
+            }
+        }
+        return newer;
+    }
+
+    @VisibleForTesting
+    ModelResult[] getResults() {
+        return mResults;
+    }
+
+    @Override
+    public void onDispose() {
+        mResults = null;
+        mFiles = null;
+        mFrameStats = null;
+        mImageDimensions = null;
+        EVENTS_POOL.release(this);
     }
 
     @Override
@@ -72,17 +119,63 @@ public class ModelProcessedEvent extends Event<ModelProcessedEvent> {
     }
 
     private WritableMap serializeEventData() {
-        WritableArray dataList = Arguments.createArray();
-
-        for (int i=0; i<mData.length; i++){
-            dataList.pushMap(mData[i]);
+        // data keeps the single-model shape: the map results of the first model that ran on this frame
+        WritableArray dataList = null;
+        WritableArray models = Arguments.createArray();
+        for (int i = 0; i < mResults.length; i++) {
+            ModelResult result = mResults[i];
+            if (result == null) {
+                continue;
+            }
+            WritableMap model = Arguments.createMap();
+            model.putInt("index", i);
+            model.putString("file", mFiles[i]);
+            if (result.isCompact()) {
+                WritableArray classes = Arguments.createArray();
+                WritableArray values = Arguments.createArray();
+                for (int r = 0; r < result.count; r++) {
+                    classes.pushInt(result.classes[r]);
+                }
+                for (int v = 0; v < result.count * result.stride; v++) {
+                    values.pushDouble(result.values[v]);
+                }
+                model.putArray("classes", classes);
+                model.putArray("values", values);
+                model.putInt("stride", result.stride);
+            } else {
+                if (dataList == null) {
+                    dataList = toArray(result.maps, true);
+                }
+                model.putArray("data", toArray(result.maps, false));
+            }
+            models.pushMap(model);
         }
 
         WritableMap event = Arguments.createMap();
-        event.putString("type", "textBlock");
-        event.putArray("data", dataList);
+        // Keeps model events apart from the other detection events in RNCamera's per-type throttle
+        event.putString("type", "model");
+        event.putArray("data", dataList != null ? dataList : Arguments.createArray());
+        event.putArray("models", models);
+        event.putMap("frameStats", mFrameStats);
         event.putInt("target", getViewTag());
         return event;
     }
 
+    /**
+     * A native map can be pushed only once, so a result that goes into two arrays is copied for the first.
+     */
+    private static WritableArray toArray(WritableMap[] results, boolean copy) {
+        WritableArray array = Arguments.createArray();
+        for (WritableMap result : results) {
+            if (copy) {
+                WritableMap duplicate = Arguments.createMap();
+                duplicate.merge(result);
+                array.pushMap(duplicate);
+            } else {
+                array.pushMap(result);
+            }
+        }
+        return array;
+    }
+
 }
@@ -0,0 +1,44 @@
+package org.reactnative.camera.events;
+
+import androidx.core.util.Pools;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.uimanager.events.Event;
+import com.facebook.react.uimanager.events.RCTEventEmitter;
+import org.reactnative.camera.CameraViewManager;
+
+public class ModelReadyEvent extends Event<ModelReadyEvent> {
+  private static final Pools.SynchronizedPool<ModelReadyEvent> EVENTS_POOL = new Pools.SynchronizedPool<>(3);
+  private WritableMap mInfo;
+
+  private ModelReadyEvent() {
+  }
+
+  public static ModelReadyEvent obtain(int viewTag, WritableMap info) {
+    ModelReadyEvent event = EVENTS_POOL.acquire();
+    if (event == null) {
+      event = new ModelReadyEvent();
+    }
+    event.init(viewTag, info);
+    return event;
+  }
+
+  private void init(int viewTag, WritableMap info) {
+    super.init(viewTag);
+    mInfo = info;
+  }
+
+  @Override
+  public short getCoalescingKey() {
+    return 0;
+  }
+
+  @Override
+  public String getEventName() {
+    return CameraViewManager.Events.EVENT_ON_MODEL_READY.toString();
+  }
+
+  @Override
+  public void dispatch(RCTEventEmitter rctEventEmitter) {
+    rctEventEmitter.receiveEvent(getViewTag(), getEventName(), mInfo);
+  }
+}
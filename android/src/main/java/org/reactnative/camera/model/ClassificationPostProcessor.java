@@ -0,0 +1,378 @@
+package org.reactnative.camera.model;
+
+import android.graphics.RectF;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import org.reactnative.camera.utils.PreviewLayout;
+import org.tensorflow.lite.DataType;
+import org.tensorflow.lite.Tensor;
+
+import java.util.Map;
+
+/**
+ * Turns a {@code [batch][numClasses]} classification output into the top results, one row at a time; the batch
+ * is larger than 1 only when tiles are batched into one run.
+ * Quantized outputs are dequantized on the fly, the top K are selected with a fixed-size primitive
+ * min-heap and a {@link WritableMap} is only built for the final results. With a smoothing window the
+ * probabilities are averaged over frames first, and the top label only changes once another label beats
+ * it by the hysteresis margin.
+ */
+public class ClassificationPostProcessor implements ModelPostProcessor {
+  private final DataType mDataType;
+  private final float mScale;
+  private final int mZeroPoint;
+  private final int mNumClasses;
+  private final int mBatchSize;
+  // Output row the next selection reads
+  private int mBatchIndex;
+  private final boolean mSoftmax;
+  private final float mThreshold;
+
+  private final float[][] mFloatOutput;
+  private final byte[][] mByteOutput;
+
+  // Min-heap of the best scores seen so far; the root holds the smallest of them
+  private final int[] mHeapIndices;
+  private final float[] mHeapScores;
+  private int mHeapSize;
+  private final int[] mResultIndices;
+  private final float[] mResultScores;
+
+  // Exponential moving average of every class probability, null without smoothing
+  private final float[] mSmoothed;
+  private final float mSmoothingFactor;
+  private final float mHysteresis;
+  private boolean mHasSmoothed;
+  private int mTopIndex = -1;
+  // Number of results the last selection produced
+  private int mSelected;
+
+  // Scratch for merging tiles, sized on first use
+  private int[] mMergeClasses;
+  private float[] mMergeScores;
+
+  public ClassificationPostProcessor(Tensor outputTensor, ModelOptions options) {
+    this(outputTensor.shape(), outputTensor.dataType(), outputTensor.quantizationParams().getScale(),
+        outputTensor.quantizationParams().getZeroPoint(), options);
+  }
+
+  @VisibleForTesting
+  ClassificationPostProcessor(int[] shape, DataType dataType, float scale, int zeroPoint, ModelOptions options) {
+    mDataType = dataType;
+    mNumClasses = shape[shape.length - 1];
+    mBatchSize = shape.length > 1 ? shape[0] : 1;
+    if (mDataType == DataType.FLOAT32) {
+      mScale = 1f;
+      mZeroPoint = 0;
+      mFloatOutput = new float[mBatchSize][mNumClasses];
+      mByteOutput = null;
+    } else if (mDataType == DataType.UINT8 || mDataType == DataType.INT8) {
+      // Without quantization parameters UINT8 scores are plain 0-255 probabilities
+      mScale = scale != 0 ? scale : 1f / 255f;
+      mZeroPoint = scale != 0 ? zeroPoint : 0;
+      mFloatOutput = null;
+      mByteOutput = new byte[mBatchSize][mNumClasses];
+    } else {
+      throw new IllegalArgumentException("Unsupported model output type " + mDataType);
+    }
+    // Quantized classifiers already end in a softmax; float models keep the historical behaviour
+    mSoftmax = options.getSoftmax() != null ? options.getSoftmax() : mDataType == DataType.FLOAT32;
+    mThreshold = options.getThreshold();
+    int numResults = Math.max(1, Math.min(options.getNumResults(), mNumClasses));
+    mHeapIndices = new int[numResults];
+    mHeapScores = new float[numResults];
+    mResultIndices = new int[numResults];
+    mResultScores = new float[numResults];
+    // Tiles see different parts of the frame, so one average over them would mean nothing
+    int window = options.getTileCount() > 1 ? 0 : options.getSmoothingWindow();
+    mSmoothed = window > 1 ? new float[mNumClasses] : null;
+    mSmoothingFactor = 2f / (window + 1);
+    mHysteresis = options.getHysteresis();
+  }
+
+  @Override
+  public void bindOutputs(Map<Integer, Object> outputs) {
+    outputs.put(0, mFloatOutput != null ? mFloatOutput : mByteOutput);
+  }
+
+  @Override
+  public WritableMap[] process(String[] labels, boolean mirrored, PreviewLayout layout, RectF region) {
+    int results = mSelected;
+    WritableMap[] recognitions = new WritableMap[results];
+    for (int i = 0; i < results; ++i) {
+      WritableMap res = Arguments.createMap();
+      int index = mResultIndices[i];
+      res.putString("label", index < labels.length ? labels[index] : "unknown");
+      res.putDouble("confidence", mResultScores[i]);
+      recognitions[i] = res;
+    }
+    return recognitions;
+  }
+
+  @Override
+  public int getMaxResults() {
+    return mResultIndices.length;
+  }
+
+  /**
+   * One value per result: the confidence.
+   */
+  @Override
+  public int getStride() {
+    return 1;
+  }
+
+  @Override
+  public int pack(boolean mirrored, PreviewLayout layout, RectF region, int[] classes,
+                  float[] values) {
+    int results = mSelected;
+    System.arraycopy(mResultIndices, 0, classes, 0, results);
+    System.arraycopy(mResultScores, 0, values, 0, results);
+    return results;
+  }
+
+  @Override
+  public int getBatchSize() {
+    return mBatchSize;
+  }
+
+  @Override
+  public void setBatchIndex(int index) {
+    mBatchIndex = index;
+  }
+
+  /**
+   * Keeps the best score of every class across tiles, then the top results.
+   */
+  @Override
+  public int merge(int tiles, int[] counts, int[][] classes, float[][] values, int[] mergedClasses,
+                   float[] mergedValues) {
+    if (mMergeClasses == null || mMergeClasses.length < tiles * mResultIndices.length) {
+      mMergeClasses = new int[tiles * mResultIndices.length];
+      mMergeScores = new float[mMergeClasses.length];
+    }
+    int merged = 0;
+    for (int t = 0; t < tiles; ++t) {
+      for (int r = 0; r < counts[t]; ++r) {
+        int index = classes[t][r];
+        float score = values[t][r];
+        int existing = 0;
+        while (existing < merged && mMergeClasses[existing] != index) {
+          existing++;
+        }
+        if (existing == merged) {
+          mMergeClasses[merged] = index;
+          mMergeScores[merged++] = score;
+        } else if (score > mMergeScores[existing]) {
+          mMergeScores[existing] = score;
+        }
+      }
+    }
+    // At most tiles * K candidates, so an insertion sort is enough
+    for (int i = 1; i < merged; ++i) {
+      int index = mMergeClasses[i];
+      float score = mMergeScores[i];
+      int j = i - 1;
+      while (j >= 0 && mMergeScores[j] < score) {
+        mMergeClasses[j + 1] = mMergeClasses[j];
+        mMergeScores[j + 1] = mMergeScores[j];
+        j--;
+      }
+      mMergeClasses[j + 1] = index;
+      mMergeScores[j + 1] = score;
+    }
+    int results = Math.min(merged, mResultIndices.length);
+    System.arraycopy(mMergeClasses, 0, mergedClasses, 0, results);
+    System.arraycopy(mMergeScores, 0, mergedValues, 0, results);
+    return results;
+  }
+
+  @Override
+  public WritableMap[] toMaps(String[] labels, boolean mirrored, PreviewLayout layout, int count,
+                              int[] classes, float[] values) {
+    WritableMap[] recognitions = new WritableMap[count];
+    for (int i = 0; i < count; ++i) {
+      WritableMap res = Arguments.createMap();
+      res.putString("label", classes[i] < labels.length ? labels[classes[i]] : "unknown");
+      res.putDouble("confidence", values[i]);
+      recognitions[i] = res;
+    }
+    return recognitions;
+  }
+
+  @Override
+  public void toView(boolean mirrored, PreviewLayout layout, int count, float[] values) {
+    // Scores only
+  }
+
+  /**
+   * Fills {@link #mResultIndices} and {@link #mResultScores} with the top results above the threshold. Advances
+   * the smoothed scores, so it runs exactly once per output.
+   */
+  @Override
+  public int select() {
+    mSelected = mSmoothed != null ? selectSmoothed() : selectTop();
+    return mSelected;
+  }
+
+  private int selectTop() {
+    mHeapSize = 0;
+    float max = Float.NEGATIVE_INFINITY;
+    for (int i = 0; i < mNumClasses; ++i) {
+      float score = score(i);
+      if (score > max) {
+        max = score;
+      }
+      offer(i, score);
+    }
+
+    float sum = 1f;
+    if (mSoftmax) {
+      // Softmax is monotonic, so it only changes the selected scores, not the selection itself
+      sum = 0f;
+      for (int i = 0; i < mNumClasses; ++i) {
+        sum += (float) Math.exp(score(i) - max);
+      }
+    }
+
+    // Pop the heap from smallest to largest and fill the results back to front
+    int count = mHeapSize;
+    int[] indices = mResultIndices;
+    float[] scores = mResultScores;
+    for (int i = count - 1; i >= 0; --i) {
+      indices[i] = mHeapIndices[0];
+      float score = mHeapScores[0];
+      scores[i] = mSoftmax ? (float) Math.exp(score - max) / sum : score;
+      mHeapSize--;
+      mHeapIndices[0] = mHeapIndices[mHeapSize];
+      mHeapScores[0] = mHeapScores[mHeapSize];
+      siftDown();
+    }
+
+    int results = 0;
+    while (results < count && scores[results] >= mThreshold) {
+      results++;
+    }
+    return results;
+  }
+
+  private int selectSmoothed() {
+    // The average is over probabilities, so the softmax has to be applied to every class
+    float max = Float.NEGATIVE_INFINITY;
+    float sum = 1f;
+    if (mSoftmax) {
+      for (int i = 0; i < mNumClasses; ++i) {
+        max = Math.max(max, score(i));
+      }
+      sum = 0f;
+      for (int i = 0; i < mNumClasses; ++i) {
+        sum += (float) Math.exp(score(i) - max);
+      }
+    }
+
+    mHeapSize = 0;
+    for (int i = 0; i < mNumClasses; ++i) {
+      float probability = mSoftmax ? (float) Math.exp(score(i) - max) / sum : score(i);
+      float smoothed = mHasSmoothed ? mSmoothed[i] + mSmoothingFactor * (probability - mSmoothed[i]) : probability;
+      mSmoothed[i] = smoothed;
+      offer(i, smoothed);
+    }
+    mHasSmoothed = true;
+
+    int count = mHeapSize;
+    for (int i = count - 1; i >= 0; --i) {
+      mResultIndices[i] = mHeapIndices[0];
+      mResultScores[i] = mHeapScores[0];
+      mHeapSize--;
+      mHeapIndices[0] = mHeapIndices[mHeapSize];
+      mHeapScores[0] = mHeapScores[mHeapSize];
+      siftDown();
+    }
+
+    // Keep the current top label until another one beats it by the hysteresis margin. A label that fell below
+    // the threshold is not held, so the results stay sorted past the front and the threshold cut below holds
+    if (mTopIndex >= 0 && count > 0 && mResultIndices[0] != mTopIndex && mSmoothed[mTopIndex] >= mThreshold
+        && mResultScores[0] < mSmoothed[mTopIndex] + mHysteresis) {
+      int position = count - 1;
+      for (int i = 1; i < count; ++i) {
+        if (mResultIndices[i] == mTopIndex) {
+          position = i;
+          break;
+        }
+      }
+      // Move the current top label to the front, dropping the last result if it fell out of the top K
+      System.arraycopy(mResultIndices, 0, mResultIndices, 1, position);
+      System.arraycopy(mResultScores, 0, mResultScores, 1, position);
+      mResultIndices[0] = mTopIndex;
+      mResultScores[0] = mSmoothed[mTopIndex];
+    }
+    if (count > 0) {
+      mTopIndex = mResultIndices[0];
+    }
+
+    int results = 0;
+    while (results < count && mResultScores[results] >= mThreshold) {
+      results++;
+    }
+    return results;
+  }
+
+  private float score(int index) {
+    switch (mDataType) {
+      case UINT8:
+        return ((mByteOutput[mBatchIndex][index] & 0xFF) - mZeroPoint) * mScale;
+      case INT8:
+        return (mByteOutput[mBatchIndex][index] - mZeroPoint) * mScale;
+      default:
+        return mFloatOutput[mBatchIndex][index];
+    }
+  }
+
+  private void offer(int index, float score) {
+    if (mHeapSize < mHeapIndices.length) {
+      int child = mHeapSize++;
+      while (child > 0) {
+        int parent = (child - 1) >> 1;
+        if (mHeapScores[parent] <= score) {
+          break;
+        }
+        mHeapIndices[child] = mHeapIndices[parent];
+        mHeapScores[child] = mHeapScores[parent];
+        child = parent;
+      }
+      mHeapIndices[child] = index;
+      mHeapScores[child] = score;
+    } else if (score > mHeapScores[0]) {
+      mHeapIndices[0] = index;
+      mHeapScores[0] = score;
+      siftDown();
+    }
+  }
+
+  private void siftDown() {
+    int index = mHeapIndices[0];
+    float score = mHeapScores[0];
+    int parent = 0;
+    while (true) {
+      int child = 2 * parent + 1;
+      if (child >= mHeapSize) {
+        break;
+      }
+      if (child + 1 < mHeapSize && mHeapScores[child + 1] < mHeapScores[child]) {
+        child++;
+      }
+      if (mHeapScores[child] >= score) {
+        break;
+      }
+      mHeapIndices[parent] = mHeapIndices[child];
+      mHeapScores[parent] = mHeapScores[child];
+      parent = child;
+    }
+    mHeapIndices[parent] = index;
+    mHeapScores[parent] = score;
+  }
+}
@@ -0,0 +1,424 @@
+package org.reactnative.camera.model;
+
+import android.graphics.RectF;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import org.reactnative.camera.utils.PreviewLayout;
+import org.tensorflow.lite.DataType;
+import org.tensorflow.lite.Interpreter;
+import org.tensorflow.lite.Tensor;
+
+import java.util.Map;
+
+/**
+ * Decodes the four outputs of the TFLite SSD post-processing op: boxes {@code [1][N][4]} as
+ * {@code (ymin, xmin, ymax, xmax)} normalized to the model input, classes {@code [1][N]}, scores {@code [1][N]}
+ * and the detection count {@code [1]}. Boxes are mapped back through the region {@link YuvPreprocessor}
+ * sampled to the upright frame, and from there to view coordinates. Classes and scores have the same shape and
+ * exporters disagree on their order, so unless {@code outputIndices} says which is which, the first detections
+ * decide: classes are whole numbers, scores lie in [0, 1].
+ */
+public class DetectionPostProcessor implements ModelPostProcessor {
+  // Overlap above which a tile's detection duplicates a better one of the same class
+  private static final float MERGE_IOU = 0.5f;
+
+  private final int mBoxesIndex;
+  private final int mCountIndex;
+  // Swapped once if the first detections show the two outputs the other way round
+  private int mClassesIndex;
+  private int mScoresIndex;
+  private boolean mOrderKnown;
+  // Number of detections the last selection kept
+  private int mSelected;
+  private final float mThreshold;
+  private final int mMaxResults;
+  private final int mLabelOffset;
+
+  private final float[][][] mBoxes;
+  private float[][] mClasses;
+  private float[][] mScores;
+  private final float[] mCount = new float[1];
+
+  // Crop of the current frame and scratch box, only used on the model worker thread
+  private float mCropX;
+  private float mCropY;
+  private float mCropWidth;
+  private float mCropHeight;
+  private final float[] mBox = new float[4];
+  // Candidates in score order while merging tiles, sized on first use
+  private int[] mMergeOrder;
+
+  public DetectionPostProcessor(Interpreter interpreter, ModelOptions options) {
+    this(outputShapes(interpreter), options);
+  }
+
+  /**
+   * @param outputShapes the shape of every model output, in output order.
+   */
+  @VisibleForTesting
+  DetectionPostProcessor(int[][] outputShapes, ModelOptions options) {
+    if (outputShapes.length != 4) {
+      throw new IllegalArgumentException("Detection models need 4 outputs, got " + outputShapes.length);
+    }
+    int boxes = -1;
+    int count = -1;
+    int classes = -1;
+    int scores = -1;
+    int[] indices = options.getOutputIndices();
+    if (indices != null) {
+      boxes = indices[0];
+      classes = indices[1];
+      scores = indices[2];
+      count = indices[3];
+    }
+    for (int i = 0; indices == null && i < 4; ++i) {
+      int[] shape = outputShapes[i];
+      if (shape.length == 3 && shape[2] == 4) {
+        boxes = i;
+      } else if (numElements(shape) == 1) {
+        count = i;
+      } else if (classes < 0) {
+        // The SSD op emits classes before scores; checked against the values later
+        classes = i;
+      } else {
+        scores = i;
+      }
+    }
+    if (boxes < 0 || boxes > 3 || count < 0 || count > 3 || classes < 0 || classes > 3 || scores < 0
+        || scores > 3) {
+      throw new IllegalArgumentException("Model outputs do not look like SSD post-processed detections");
+    }
+    mBoxesIndex = boxes;
+    mClassesIndex = classes;
+    mScoresIndex = scores;
+    mCountIndex = count;
+    int maxDetections = outputShapes[boxes][1];
+    mBoxes = new float[1][maxDetections][4];
+    mClasses = new float[1][maxDetections];
+    mScores = new float[1][maxDetections];
+    mThreshold = options.getThreshold();
+    mMaxResults = Math.max(1, Math.min(options.getNumResults(), maxDetections));
+    mLabelOffset = options.getLabelOffset();
+    mOrderKnown = indices != null;
+  }
+
+  /**
+   * @return the shape of every output, after checking they are all float.
+   */
+  private static int[][] outputShapes(Interpreter interpreter) {
+    int[][] shapes = new int[interpreter.getOutputTensorCount()][];
+    for (int i = 0; i < shapes.length; ++i) {
+      Tensor tensor = interpreter.getOutputTensor(i);
+      if (tensor.dataType() != DataType.FLOAT32) {
+        throw new IllegalArgumentException("Unsupported detection output type " + tensor.dataType());
+      }
+      shapes[i] = tensor.shape();
+    }
+    return shapes;
+  }
+
+  private static int numElements(int[] shape) {
+    int elements = 1;
+    for (int dimension : shape) {
+      elements *= dimension;
+    }
+    return elements;
+  }
+
+  @Override
+  public void bindOutputs(Map<Integer, Object> outputs) {
+    outputs.put(mBoxesIndex, mBoxes);
+    outputs.put(mClassesIndex, mClasses);
+    outputs.put(mScoresIndex, mScores);
+    outputs.put(mCountIndex, mCount);
+  }
+
+  @Override
+  public WritableMap[] process(String[] labels, boolean mirrored, PreviewLayout layout, RectF region) {
+    int results = mSelected;
+    setRegion(region);
+    float[] box = mBox;
+    WritableMap[] detections = new WritableMap[results];
+    for (int i = 0; i < results; ++i) {
+      toFrame(i, box);
+      detections[i] = toMap(labels, (int) mClasses[0][i] + mLabelOffset, mScores[0][i], box, layout, mirrored);
+    }
+    return detections;
+  }
+
+  @Override
+  public int getMaxResults() {
+    return mMaxResults;
+  }
+
+  /**
+   * Five values per result: the confidence, then x, y, width and height of the box in view dp, or normalized
+   * to the upright frame before the view is laid out.
+   */
+  @Override
+  public int getStride() {
+    return 5;
+  }
+
+  @Override
+  public int pack(boolean mirrored, PreviewLayout layout, RectF region, int[] classes,
+                  float[] values) {
+    int results = mSelected;
+    setRegion(region);
+    float[] box = mBox;
+    for (int i = 0; i < results; ++i) {
+      toFrame(i, box);
+      if (layout != null) {
+        toView(layout, mirrored, box);
+      } else {
+        box[2] -= box[0];
+        box[3] -= box[1];
+      }
+      classes[i] = (int) mClasses[0][i] + mLabelOffset;
+      int offset = i * 5;
+      values[offset] = mScores[0][i];
+      System.arraycopy(box, 0, values, offset + 1, 4);
+    }
+    return results;
+  }
+
+  /**
+   * The detection post-processing op only handles one image per run.
+   */
+  @Override
+  public int getBatchSize() {
+    return 1;
+  }
+
+  @Override
+  public void setBatchIndex(int index) {
+  }
+
+  /**
+   * Pools the detections of all tiles and drops those overlapping a better detection of the same class by more
+   * than {@link #MERGE_IOU}, which removes the duplicates objects in the overlap between tiles produce.
+   */
+  @Override
+  public int merge(int tiles, int[] counts, int[][] classes, float[][] values, int[] mergedClasses,
+                   float[] mergedValues) {
+    int candidates = 0;
+    for (int t = 0; t < tiles; ++t) {
+      candidates += counts[t];
+    }
+    if (mMergeOrder == null || mMergeOrder.length < candidates) {
+      mMergeOrder = new int[candidates];
+    }
+    // Candidate c is result (c % mMaxResults) of tile (c / mMaxResults); sort them by descending score
+    int sorted = 0;
+    for (int t = 0; t < tiles; ++t) {
+      for (int r = 0; r < counts[t]; ++r) {
+        int candidate = t * mMaxResults + r;
+        float score = values[t][r * 5];
+        int j = sorted - 1;
+        while (j >= 0 && score(values, mMergeOrder[j]) < score) {
+          mMergeOrder[j + 1] = mMergeOrder[j];
+          j--;
+        }
+        mMergeOrder[j + 1] = candidate;
+        sorted++;
+      }
+    }
+    int merged = 0;
+    for (int c = 0; c < sorted && merged < mMaxResults; ++c) {
+      int tile = mMergeOrder[c] / mMaxResults;
+      int result = mMergeOrder[c] % mMaxResults;
+      int offset = result * 5;
+      boolean duplicate = false;
+      for (int k = 0; k < merged && !duplicate; ++k) {
+        duplicate = mergedClasses[k] == classes[tile][result]
+            && iou(values[tile], offset, mergedValues, k * 5) > MERGE_IOU;
+      }
+      if (!duplicate) {
+        mergedClasses[merged] = classes[tile][result];
+        System.arraycopy(values[tile], offset, mergedValues, merged * 5, 5);
+        merged++;
+      }
+    }
+    return merged;
+  }
+
+  @Override
+  public WritableMap[] toMaps(String[] labels, boolean mirrored, PreviewLayout layout, int count,
+                              int[] classes, float[] values) {
+    float[] box = mBox;
+    WritableMap[] detections = new WritableMap[count];
+    for (int i = 0; i < count; ++i) {
+      unpack(values, i * 5, box);
+      detections[i] = toMap(labels, classes[i], values[i * 5], box, layout, mirrored);
+    }
+    return detections;
+  }
+
+  @Override
+  public void toView(boolean mirrored, PreviewLayout layout, int count, float[] values) {
+    if (layout == null) {
+      return;
+    }
+    float[] box = mBox;
+    for (int i = 0; i < count; ++i) {
+      unpack(values, i * 5, box);
+      toView(layout, mirrored, box);
+      System.arraycopy(box, 0, values, i * 5 + 1, 4);
+    }
+  }
+
+  /**
+   * Builds the result for one detection; {@code box} is left, top, right, bottom normalized to the upright frame
+   * and is overwritten.
+   */
+  private static WritableMap toMap(String[] labels, int index, float score, float[] box, PreviewLayout layout,
+                                   boolean mirrored) {
+    WritableMap detection = Arguments.createMap();
+    detection.putString("label", index >= 0 && index < labels.length ? labels[index] : "unknown");
+    detection.putDouble("confidence", score);
+    WritableMap normalized = Arguments.createMap();
+    normalized.putDouble("left", box[0]);
+    normalized.putDouble("top", box[1]);
+    normalized.putDouble("right", box[2]);
+    normalized.putDouble("bottom", box[3]);
+    detection.putMap("box", normalized);
+    if (layout != null) {
+      toView(layout, mirrored, box);
+      WritableMap origin = Arguments.createMap();
+      origin.putDouble("x", box[0]);
+      origin.putDouble("y", box[1]);
+      WritableMap size = Arguments.createMap();
+      size.putDouble("width", box[2]);
+      size.putDouble("height", box[3]);
+      WritableMap bounds = Arguments.createMap();
+      bounds.putMap("origin", origin);
+      bounds.putMap("size", size);
+      detection.putMap("bounds", bounds);
+    }
+    return detection;
+  }
+
+  private float score(float[][] values, int candidate) {
+    return values[candidate / mMaxResults][(candidate % mMaxResults) * 5];
+  }
+
+  /**
+   * Reads the x, y, width and height packed at {@code offset + 1} back into left, top, right, bottom.
+   */
+  private static void unpack(float[] values, int offset, float[] box) {
+    box[0] = values[offset + 1];
+    box[1] = values[offset + 2];
+    box[2] = values[offset + 1] + values[offset + 3];
+    box[3] = values[offset + 2] + values[offset + 4];
+  }
+
+  /**
+   * @return the intersection over union of two packed boxes.
+   */
+  private static float iou(float[] a, int aOffset, float[] b, int bOffset) {
+    float left = Math.max(a[aOffset + 1], b[bOffset + 1]);
+    float top = Math.max(a[aOffset + 2], b[bOffset + 2]);
+    float right = Math.min(a[aOffset + 1] + a[aOffset + 3], b[bOffset + 1] + b[bOffset + 3]);
+    float bottom = Math.min(a[aOffset + 2] + a[aOffset + 4], b[bOffset + 2] + b[bOffset + 4]);
+    if (right <= left || bottom <= top) {
+      return 0f;
+    }
+    float intersection = (right - left) * (bottom - top);
+    float union = a[aOffset + 3] * a[aOffset + 4] + b[bOffset + 3] * b[bOffset + 4] - intersection;
+    return union > 0f ? intersection / union : 0f;
+  }
+
+  /**
+   * Keeps the detections that pass the threshold, at most {@link #mMaxResults}.
+   */
+  @Override
+  public int select() {
+    int available = Math.min((int) mCount[0], mBoxes[0].length);
+    if (!mOrderKnown && available > 0) {
+      checkOrder(available);
+    }
+    // Detections come sorted by descending score
+    int results = 0;
+    while (results < available && results < mMaxResults && mScores[0][results] >= mThreshold) {
+      results++;
+    }
+    mSelected = results;
+    return results;
+  }
+
+  /**
+   * Swaps classes and scores if their values show they were told apart the wrong way round. Stays undecided while
+   * both look the same, e.g. only class 0 and class 1 detections with scores of exactly 0 or 1.
+   */
+  private void checkOrder(int available) {
+    boolean classesWhole = true;
+    boolean classesAboveOne = false;
+    boolean scoresWhole = true;
+    boolean scoresAboveOne = false;
+    for (int i = 0; i < available; ++i) {
+      float classValue = mClasses[0][i];
+      float scoreValue = mScores[0][i];
+      classesWhole &= classValue == (float) Math.floor(classValue);
+      classesAboveOne |= classValue > 1f;
+      scoresWhole &= scoreValue == (float) Math.floor(scoreValue);
+      scoresAboveOne |= scoreValue > 1f;
+    }
+    boolean swapped = (!classesWhole && !classesAboveOne) || (scoresWhole && scoresAboveOne);
+    boolean confirmed = (classesWhole && classesAboveOne) || (!scoresWhole && !scoresAboveOne);
+    if (swapped) {
+      float[][] classes = mClasses;
+      mClasses = mScores;
+      mScores = classes;
+      int classesIndex = mClassesIndex;
+      mClassesIndex = mScoresIndex;
+      mScoresIndex = classesIndex;
+      mOrderKnown = true;
+    } else if (confirmed) {
+      mOrderKnown = true;
+    }
+  }
+
+  /**
+   * Sets the part of the upright frame the model saw: the preprocessor center-crops the frame, or the region of
+   * interest, to the input aspect.
+   */
+  private void setRegion(RectF region) {
+    mCropX = region.left;
+    mCropY = region.top;
+    mCropWidth = region.width();
+    mCropHeight = region.height();
+  }
+
+  /**
+   * Writes detection {@code index} as left, top, right, bottom normalized to the upright frame.
+   */
+  private void toFrame(int index, float[] box) {
+    float[] raw = mBoxes[0][index];
+    box[0] = mCropX + clamp(raw[1]) * mCropWidth;
+    box[1] = mCropY + clamp(raw[0]) * mCropHeight;
+    box[2] = mCropX + clamp(raw[3]) * mCropWidth;
+    box[3] = mCropY + clamp(raw[2]) * mCropHeight;
+  }
+
+  /**
+   * Turns a box from {@link #toFrame} into x, y, width and height in view dp.
+   */
+  private static void toView(PreviewLayout layout, boolean mirrored, float[] box) {
+    float x1 = (float) layout.toViewX(box[0], mirrored);
+    float x2 = (float) layout.toViewX(box[2], mirrored);
+    float y1 = (float) layout.toViewY(box[1]);
+    float y2 = (float) layout.toViewY(box[3]);
+    box[0] = Math.min(x1, x2);
+    box[1] = y1;
+    box[2] = Math.abs(x2 - x1);
+    box[3] = y2 - y1;
+  }
+
+  private static float clamp(float value) {
+    return value < 0f ? 0f : (value > 1f ? 1f : value);
+  }
+}
@@ -0,0 +1,100 @@
+package org.reactnative.camera.model;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.PowerManager;
+
+/**
+ * Decides which camera frames are worth running the model on.
+ * Frames are skipped by arrival time before anything is copied or preprocessed. The fixed interval comes from
+ * {@code maxFps} or {@code minIntervalMs}; in adaptive mode it also stretches with the measured processing time,
+ * battery saver and battery temperature, which is the thermal signal available without API 29.
+ */
+public class FrameThrottle {
+  private static final long NANOS_PER_MILLI = 1000000L;
+  // In adaptive mode inference may keep the worker busy at most this fraction of the time
+  private static final float ADAPTIVE_MAX_DUTY_CYCLE = 0.5f;
+  private static final float LATENCY_SMOOTHING = 0.2f;
+  private static final long CONDITIONS_POLL_INTERVAL_NS = 5000 * NANOS_PER_MILLI;
+  // Battery temperatures in tenths of a degree Celsius
+  private static final int WARM_BATTERY_TEMPERATURE = 420;
+  private static final int HOT_BATTERY_TEMPERATURE = 450;
+
+  private final Context mContext;
+  private final long mMinIntervalNs;
+  private final boolean mAdaptive;
+
+  // Only touched by the thread delivering frames
+  private long mLastAcceptedNs = Long.MIN_VALUE;
+
+  // Written by the worker thread
+  private volatile long mIntervalNs;
+  private float mLatencyEmaNs;
+  private float mConditionsScale = 1f;
+  private long mLastConditionsPollNs = Long.MIN_VALUE;
+
+  public FrameThrottle(Context context, ModelOptions options) {
+    mContext = context.getApplicationContext();
+    mMinIntervalNs = options.getMinIntervalMs() * NANOS_PER_MILLI;
+    mAdaptive = options.isAdaptiveFps();
+    mIntervalNs = mMinIntervalNs;
+  }
+
+  /**
+   * @return whether a frame arriving at {@code nowNs} ({@link System#nanoTime()}) should be processed.
+   */
+  public boolean shouldAccept(long nowNs) {
+    long intervalNs = mIntervalNs;
+    if (intervalNs > 0 && mLastAcceptedNs != Long.MIN_VALUE && nowNs - mLastAcceptedNs < intervalNs) {
+      return false;
+    }
+    mLastAcceptedNs = nowNs;
+    return true;
+  }
+
+  /**
+   * Feeds the time the worker spent on an accepted frame back into the adaptive interval.
+   */
+  public void onFrameProcessed(long processingNs) {
+    if (!mAdaptive) {
+      return;
+    }
+    mLatencyEmaNs = mLatencyEmaNs == 0 ? processingNs
+        : mLatencyEmaNs + LATENCY_SMOOTHING * (processingNs - mLatencyEmaNs);
+    long nowNs = System.nanoTime();
+    if (mLastConditionsPollNs == Long.MIN_VALUE || nowNs - mLastConditionsPollNs >= CONDITIONS_POLL_INTERVAL_NS) {
+      mLastConditionsPollNs = nowNs;
+      mConditionsScale = pollConditions();
+    }
+    long adaptiveNs = (long) (mLatencyEmaNs / ADAPTIVE_MAX_DUTY_CYCLE * mConditionsScale);
+    mIntervalNs = Math.max(mMinIntervalNs, adaptiveNs);
+  }
+
+  /**
+   * @return the current interval between processed frames in milliseconds, 0 when unthrottled.
+   */
+  public double getIntervalMs() {
+    return (double) mIntervalNs / NANOS_PER_MILLI;
+  }
+
+  private float pollConditions() {
+    float scale = 1f;
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+      PowerManager powerManager = (PowerManager) mContext.getSystemService(Context.POWER_SERVICE);
+      if (powerManager != null && powerManager.isPowerSaveMode()) {
+        scale *= 2f;
+      }
+    }
+    Intent battery = mContext.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+    int temperature = battery != null ? battery.getIntExtra(BatteryManager.EXTRA_TEMPERATURE, 0) : 0;
+    if (temperature >= HOT_BATTERY_TEMPERATURE) {
+      scale *= 4f;
+    } else if (temperature >= WARM_BATTERY_TEMPERATURE) {
+      scale *= 2f;
+    }
+    return scale;
+  }
+}
@@ -0,0 +1,136 @@
+package org.reactnative.camera.model;
+
+import org.tensorflow.lite.DataType;
+import org.tensorflow.lite.Tensor;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Writes RGB pixels into a model input buffer in the element type, channel order and layout the input tensor
+ * expects. Float inputs are normalized, UINT8 inputs receive the raw pixel bytes and INT8 inputs are normalized
+ * and then quantized with the tensor's scale and zero point. Normalization is precomputed into a 256-entry
+ * lookup table per channel, so encoding a pixel is three table reads. Single channel models receive luma.
+ */
+public class InputEncoder {
+  private final InputSpec mSpec;
+  private final DataType mDataType;
+  private final boolean mBgr;
+  private final float[][] mFloatTables;
+  private final byte[][] mInt8Tables;
+  // Byte distance between consecutive pixels and between the channels of one pixel
+  private final int mPixelStride;
+  private final int mChannelStride;
+
+  public InputEncoder(InputSpec spec, float scale, int zeroPoint, ModelOptions options) {
+    DataType dataType = spec.getDataType();
+    if (dataType != DataType.FLOAT32 && dataType != DataType.UINT8 && dataType != DataType.INT8) {
+      throw new IllegalArgumentException("Unsupported model input type " + dataType);
+    }
+    mSpec = spec;
+    mDataType = dataType;
+    mBgr = options.isBgr();
+    int bytesPerChannel = spec.getBytesPerChannel();
+    if (spec.getLayout() == InputSpec.Layout.NCHW) {
+      mPixelStride = bytesPerChannel;
+      mChannelStride = spec.getWidth() * spec.getHeight() * bytesPerChannel;
+    } else {
+      mPixelStride = spec.getChannels() * bytesPerChannel;
+      mChannelStride = bytesPerChannel;
+    }
+
+    float[][] normalized = null;
+    if (dataType != DataType.UINT8) {
+      normalized = new float[3][];
+      for (int c = 0; c < 3; ++c) {
+        normalized[c] = normalizeTable(options.getInputRange(), options.getMean()[c], options.getStd()[c]);
+      }
+    }
+    if (dataType == DataType.FLOAT32) {
+      mFloatTables = normalized;
+      mInt8Tables = null;
+    } else if (dataType == DataType.INT8) {
+      mFloatTables = null;
+      mInt8Tables = new byte[3][];
+      for (int c = 0; c < 3; ++c) {
+        mInt8Tables[c] = quantizeTable(normalized[c], scale, zeroPoint);
+      }
+    } else {
+      mFloatTables = null;
+      mInt8Tables = null;
+    }
+  }
+
+  public static InputEncoder forTensor(Tensor tensor, ModelOptions options) {
+    Tensor.QuantizationParams params = tensor.quantizationParams();
+    InputSpec spec = InputSpec.fromTensor(tensor, options.getInputLayout());
+    return new InputEncoder(spec, params.getScale(), params.getZeroPoint(), options);
+  }
+
+  public InputSpec getSpec() {
+    return mSpec;
+  }
+
+  /**
+   * @return whether both encoders write identical bytes for every pixel, so their models can share one input buffer.
+   */
+  public boolean encodesLike(InputEncoder other) {
+    return mSpec.sameAs(other.mSpec)
+        && mBgr == other.mBgr
+        && Arrays.deepEquals(mFloatTables, other.mFloatTables)
+        && Arrays.deepEquals(mInt8Tables, other.mInt8Tables);
+  }
+
+  /**
+   * Writes the pixel at {@code pixelIndex} ({@code y * width + x} in the output image) with absolute puts,
+   * so pixels may be written in any order and the buffer position is left untouched.
+   */
+  public void put(ByteBuffer out, int pixelIndex, int r, int g, int b) {
+    final int offset = pixelIndex * mPixelStride;
+    if (mSpec.getChannels() == 1) {
+      putChannel(out, offset, 0, (77 * r + 150 * g + 29 * b) >> 8);
+    } else if (mBgr) {
+      putChannel(out, offset, 2, b);
+      putChannel(out, offset + mChannelStride, 1, g);
+      putChannel(out, offset + 2 * mChannelStride, 0, r);
+    } else {
+      putChannel(out, offset, 0, r);
+      putChannel(out, offset + mChannelStride, 1, g);
+      putChannel(out, offset + 2 * mChannelStride, 2, b);
+    }
+  }
+
+  /**
+   * Writes a single value of RGB channel {@code channel} (0 = R, 1 = G, 2 = B) at byte offset {@code index}.
+   */
+  private void putChannel(ByteBuffer out, int index, int channel, int value) {
+    switch (mDataType) {
+      case UINT8:
+        out.put(index, (byte) value);
+        break;
+      case INT8:
+        out.put(index, mInt8Tables[channel][value]);
+        break;
+      default:
+        out.putFloat(index, mFloatTables[channel][value]);
+    }
+  }
+
+  private static float[] normalizeTable(float[] inputRange, float mean, float std) {
+    float[] table = new float[256];
+    float step = (inputRange[1] - inputRange[0]) / 255f;
+    for (int i = 0; i < 256; ++i) {
+      table[i] = (inputRange[0] + i * step - mean) / std;
+    }
+    return table;
+  }
+
+  private static byte[] quantizeTable(float[] normalized, float scale, int zeroPoint) {
+    byte[] table = new byte[256];
+    for (int i = 0; i < 256; ++i) {
+      int quantized = scale == 0 ? i - 128 : Math.round(normalized[i] / scale) + zeroPoint;
+      table[i] = (byte) Math.max(-128, Math.min(127, quantized));
+    }
+    return table;
+  }
+}
@@ -0,0 +1,92 @@
+package org.reactnative.camera.model;
+
+import org.tensorflow.lite.DataType;
+import org.tensorflow.lite.Tensor;
+
+import java.util.Arrays;
+
+/**
+ * Geometry, element type and memory layout of an image input tensor.
+ */
+public class InputSpec {
+  public enum Layout {
+    NHWC,
+    NCHW
+  }
+
+  private final int mHeight;
+  private final int mWidth;
+  private final int mChannels;
+  private final Layout mLayout;
+  private final DataType mDataType;
+
+  public InputSpec(int height, int width, int channels, Layout layout, DataType dataType) {
+    if (channels != 1 && channels != 3) {
+      throw new IllegalArgumentException("Unsupported number of input channels " + channels);
+    }
+    mHeight = height;
+    mWidth = width;
+    mChannels = channels;
+    mLayout = layout;
+    mDataType = dataType;
+  }
+
+  /**
+   * Reads the input geometry from {@code tensor}. Shapes are expected as {@code [1, H, W, C]},
+   * {@code [1, C, H, W]} or {@code [1, H, W]}; the layout is guessed from where the 1 or 3 channel
+   * dimension is unless {@code layout} forces it.
+   */
+  public static InputSpec fromTensor(Tensor tensor, Layout layout) {
+    int[] shape = tensor.shape();
+    if (shape.length == 3) {
+      return new InputSpec(shape[1], shape[2], 1, Layout.NHWC, tensor.dataType());
+    }
+    if (shape.length != 4) {
+      throw new IllegalArgumentException("Unsupported model input shape " + Arrays.toString(shape));
+    }
+    if (layout == null) {
+      layout = isChannelCount(shape[3]) || !isChannelCount(shape[1]) ? Layout.NHWC : Layout.NCHW;
+    }
+    if (layout == Layout.NCHW) {
+      return new InputSpec(shape[2], shape[3], shape[1], layout, tensor.dataType());
+    }
+    return new InputSpec(shape[1], shape[2], shape[3], layout, tensor.dataType());
+  }
+
+  public boolean sameAs(InputSpec other) {
+    return mHeight == other.mHeight && mWidth == other.mWidth && mChannels == other.mChannels
+        && mLayout == other.mLayout && mDataType == other.mDataType;
+  }
+
+  private static boolean isChannelCount(int dimension) {
+    return dimension == 1 || dimension == 3;
+  }
+
+  public int getHeight() {
+    return mHeight;
+  }
+
+  public int getWidth() {
+    return mWidth;
+  }
+
+  public int getChannels() {
+    return mChannels;
+  }
+
+  public Layout getLayout() {
+    return mLayout;
+  }
+
+  public DataType getDataType() {
+    return mDataType;
+  }
+
+  public int getBytesPerChannel() {
+    return mDataType == DataType.FLOAT32 ? 4 : 1;
+  }
+
+  public int getByteSize() {
+    return mHeight * mWidth * mChannels * getBytesPerChannel();
+  }
+}
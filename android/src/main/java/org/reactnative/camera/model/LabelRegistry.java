@@ -0,0 +1,59 @@
+package org.reactnative.camera.model;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide cache of parsed label files, keyed by asset path.
+ * Each file is read once and kept as a compact array shared by every model processor.
+ */
+public class LabelRegistry {
+  private static final String TAG = "LabelRegistry";
+
+  private static final ConcurrentHashMap<String, String[]> LABELS = new ConcurrentHashMap<>();
+
+  /**
+   * @return the labels stored in {@code assetPath}, or {@code null} if the asset could not be read.
+   */
+  public static String[] get(Context context, String assetPath) {
+    if (assetPath == null) {
+      return null;
+    }
+    String[] labels = LABELS.get(assetPath);
+    if (labels != null) {
+      return labels;
+    }
+    synchronized (LABELS) {
+      labels = LABELS.get(assetPath);
+      if (labels == null) {
+        try {
+          labels = load(context, assetPath);
+          LABELS.put(assetPath, labels);
+        } catch (IOException e) {
+          Log.e(TAG, "Failed to read label file " + assetPath, e);
+        }
+      }
+    }
+    return labels;
+  }
+
+  private static String[] load(Context context, String assetPath) throws IOException {
+    ArrayList<String> lines = new ArrayList<>();
+    BufferedReader reader = new BufferedReader(new InputStreamReader(context.getAssets().open(assetPath)));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        lines.add(line);
+      }
+    } finally {
+      reader.close();
+    }
+    return lines.toArray(new String[lines.size()]);
+  }
+}
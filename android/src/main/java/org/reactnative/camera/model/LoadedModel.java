@@ -0,0 +1,353 @@
+package org.reactnative.camera.model;
+
+import android.content.Context;
+import android.graphics.RectF;
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.google.android.cameraview.YuvFrame;
+
+import org.reactnative.camera.Constants;
+import org.reactnative.camera.utils.PreviewLayout;
+import org.tensorflow.lite.Interpreter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Everything needed to run one model on camera frames: a cached interpreter with its input buffer,
+ * preprocessor, post-processor and labels. Only one thread may use it at a time. A model can be held by
+ * several pipelines; each holder {@link #retain}s it and calls {@link #close} once.
+ */
+public class LoadedModel {
+  private static final String TAG = "LoadedModel";
+
+  private final ModelOptions mOptions;
+  private final ModelCache.Entry mCacheEntry;
+  private final Interpreter mInterpreter;
+  private final String[] mLabels;
+  private final InputEncoder mEncoder;
+  private final InputSpec mInputSpec;
+  private final ByteBuffer mInput;
+  private final YuvPreprocessor mPreprocessor;
+  private final ModelPostProcessor mPostProcessor;
+  private final Object[] mInputs;
+  private final Map<Integer, Object> mOutputs = new HashMap<>();
+  private final AtomicInteger mRefCount = new AtomicInteger(1);
+  // Set when only changed results are emitted, with the packed results it compares
+  private final ResultChangeFilter mChangeFilter;
+  private final int[] mPackedClasses;
+  private final float[] mPackedValues;
+  // Region of interest in view coordinates; replaced as a whole, never mutated
+  private volatile RectF mRoi;
+  // Scratch region in frame coordinates, only used on the model worker thread
+  private final RectF mFrameRegion = new RectF();
+  // Set when the frame is split into tiles, with the scratch arrays their merged results go into
+  private final TileGrid mTiles;
+  private final int[] mMergedClasses;
+  private final float[] mMergedValues;
+  // Whether the last prepared frame gave the model anything to run on
+  private boolean mHasInput;
+
+  private LoadedModel(ModelOptions options, ModelCache.Entry cacheEntry, String[] labels) {
+    mOptions = options;
+    mCacheEntry = cacheEntry;
+    mInterpreter = cacheEntry.getInterpreter();
+    mLabels = labels;
+    boolean detection = isDetection(mInterpreter, options);
+    // The detection post-processing op only handles one image per run
+    int batchSize = options.isBatchTiles() && !detection ? resizeBatch(mInterpreter, options.getTileCount()) : 1;
+    mEncoder = InputEncoder.forTensor(mInterpreter.getInputTensor(0), options);
+    mInputSpec = mEncoder.getSpec();
+    mInput = ByteBuffer.allocateDirect(mInputSpec.getByteSize() * batchSize);
+    mInput.order(ByteOrder.nativeOrder());
+    mPreprocessor = new YuvPreprocessor(mEncoder);
+    mPostProcessor = detection
+        ? new DetectionPostProcessor(mInterpreter, options)
+        : new ClassificationPostProcessor(mInterpreter.getOutputTensor(0), options);
+    mInputs = new Object[] { mInput };
+    mPostProcessor.bindOutputs(mOutputs);
+    mRoi = options.getRoi();
+    if (options.isEmitOnChange()) {
+      mChangeFilter = new ResultChangeFilter(options, mPostProcessor.getMaxResults(), mPostProcessor.getStride());
+      mPackedClasses = new int[mPostProcessor.getMaxResults()];
+      mPackedValues = new float[mPackedClasses.length * mPostProcessor.getStride()];
+    } else {
+      mChangeFilter = null;
+      mPackedClasses = null;
+      mPackedValues = null;
+    }
+    if (options.getTileCount() > 1) {
+      mTiles = new TileGrid(options, mPostProcessor, mInput, mInputSpec.getByteSize(), batchSize);
+      mMergedClasses = new int[mPostProcessor.getMaxResults()];
+      mMergedValues = new float[mMergedClasses.length * mPostProcessor.getStride()];
+    } else {
+      mTiles = null;
+      mMergedClasses = null;
+      mMergedValues = null;
+    }
+  }
+
+  public static LoadedModel load(Context context, ModelOptions options, String[] labels) throws IOException {
+    ModelCache.Entry entry = ModelCache.acquire(context, options);
+    try {
+      return new LoadedModel(options, entry, labels);
+    } catch (RuntimeException e) {
+      ModelCache.release(entry);
+      throw e;
+    }
+  }
+
+  private static boolean isDetection(Interpreter interpreter, ModelOptions options) {
+    String outputType = options.getOutputType();
+    return outputType != null ? "detection".equals(outputType) : interpreter.getOutputTensorCount() == 4;
+  }
+
+  /**
+   * Resizes the batch dimension of the input so all tiles run at once. Models with a fixed batch size reject the
+   * new shape and keep running one tile per frame.
+   *
+   * @return the batch size the interpreter ended up with.
+   */
+  private static int resizeBatch(Interpreter interpreter, int batchSize) {
+    int[] shape = interpreter.getInputTensor(0).shape();
+    if (shape.length != 4) {
+      return 1;
+    }
+    if (shape[0] == batchSize) {
+      // Resized when the cached interpreter was first loaded
+      return batchSize;
+    }
+    int[] batched = shape.clone();
+    batched[0] = batchSize;
+    try {
+      interpreter.resizeInput(0, batched);
+      interpreter.allocateTensors();
+      if (interpreter.getOutputTensor(0).shape()[0] == batchSize) {
+        return batchSize;
+      }
+    } catch (IllegalArgumentException | IllegalStateException e) {
+      Log.w(TAG, "Model does not accept a batch of " + batchSize + " tiles, running one tile per frame", e);
+    }
+    interpreter.resizeInput(0, shape);
+    interpreter.allocateTensors();
+    return 1;
+  }
+
+  public ModelOptions getOptions() {
+    return mOptions;
+  }
+
+  public InputSpec getInputSpec() {
+    return mInputSpec;
+  }
+
+  /**
+   * @return whether the interpreter was already warm in the {@link ModelCache}.
+   */
+  public boolean wasCached() {
+    return mCacheEntry.wasReused();
+  }
+
+  /**
+   * @return the model file and the input the model expects, for the {@code onModelReady} event.
+   */
+  public WritableMap describe() {
+    WritableMap input = Arguments.createMap();
+    input.putInt("width", mInputSpec.getWidth());
+    input.putInt("height", mInputSpec.getHeight());
+    input.putInt("channels", mInputSpec.getChannels());
+    input.putString("layout", mInputSpec.getLayout().name());
+    input.putString("type", mInputSpec.getDataType().name());
+    WritableMap description = Arguments.createMap();
+    description.putString("file", mOptions.getModelFile());
+    description.putMap("input", input);
+    description.putBoolean("cached", wasCached());
+    if (mTiles != null) {
+      WritableMap tiles = Arguments.createMap();
+      tiles.putInt("rows", mOptions.getTileRows());
+      tiles.putInt("cols", mOptions.getTileCols());
+      tiles.putBoolean("batched", mTiles.isBatched());
+      description.putMap("tiles", tiles);
+    }
+    if (mOptions.isCompactResults()) {
+      // Compact results only carry indices into this array
+      WritableArray labels = Arguments.createArray();
+      for (String label : mLabels) {
+        labels.pushString(label);
+      }
+      description.putArray("labels", labels);
+    }
+    return description;
+  }
+
+  /**
+   * @return whether this model reads exactly the same input bytes as {@code other}. Tiled inputs are never shared.
+   */
+  public boolean sharesInputWith(LoadedModel other) {
+    return mTiles == null && other.mTiles == null && mEncoder.encodesLike(other.mEncoder);
+  }
+
+  public ByteBuffer getInput() {
+    return mInput;
+  }
+
+  /**
+   * Sets the region of the view the model looks at, normalized to the view size, or {@code null} for the
+   * whole frame. Applies from the next frame.
+   */
+  public void setRoi(RectF roi) {
+    mRoi = roi;
+  }
+
+  public RectF getRoi() {
+    return mRoi;
+  }
+
+  /**
+   * Converts the frame, or the part of it under the region of interest, into the input tensor. Tiled models
+   * convert all tiles when they are batched, or the next tile in turn.
+   *
+   * @param facing the camera the frame comes from, to mirror the region for the front camera.
+   * @param layout where the preview sits in the view; the region is ignored until the view is laid out.
+   * @return {@code false} if the frame could not be converted into the input tensor. A region of interest outside
+   * the visible preview is not an error, but leaves the model without input; see {@link #hasInput()}.
+   */
+  public boolean prepare(YuvFrame frame, int rotation, int facing, PreviewLayout layout) {
+    RectF roi = mRoi;
+    RectF region = null;
+    mHasInput = false;
+    if (roi != null && layout != null) {
+      region = layout.toFrameRect(roi, facing == Constants.FACING_FRONT, mFrameRegion);
+      if (region.isEmpty()) {
+        return true;
+      }
+    }
+    mHasInput = true;
+    if (mTiles != null) {
+      return mTiles.prepare(mPreprocessor, frame, rotation, region, mInput);
+    }
+    return mPreprocessor.process(frame, rotation, region, mInput);
+  }
+
+  /**
+   * @return whether the last prepared frame gave the model an input to run on.
+   */
+  public boolean hasInput() {
+    return mHasInput;
+  }
+
+  /**
+   * @return the part of the upright frame the last prepared input covers, normalized to its size.
+   */
+  public RectF getInputRegion() {
+    return mPreprocessor.getRegion();
+  }
+
+  public void run() {
+    run(mInput);
+  }
+
+  /**
+   * Runs the model on {@code input}, the input buffer of a model it {@link #sharesInputWith}.
+   */
+  public void run(ByteBuffer input) {
+    mInputs[0] = input;
+    mInterpreter.runForMultipleInputsOutputs(mInputs, mOutputs);
+  }
+
+  /**
+   * Runs the model on a blank input so tensor allocation and kernel preparation do not land on a live frame.
+   */
+  public void warmUp(int runs) {
+    for (int i = 0; i < runs; ++i) {
+      run();
+    }
+  }
+
+  /**
+   * @param facing the camera the frame comes from, to mirror boxes for the front camera.
+   * @param layout where the preview sits in the view, or {@code null} before the view is laid out.
+   * @param region the part of the upright frame the input covered, from {@link #getInputRegion()} of the model
+   *               whose input this model read.
+   * @return the results, or {@code null} if only changes are emitted and they match the last emitted ones.
+   */
+  public ModelResult postProcess(int facing, PreviewLayout layout, RectF region) {
+    boolean mirrored = facing == Constants.FACING_FRONT;
+    if (mTiles != null) {
+      return postProcessTiles(mirrored, layout);
+    }
+    // Selected once: packing for the change filter and building maps both read this selection
+    mPostProcessor.select();
+    if (mChangeFilter != null) {
+      int count = mPostProcessor.pack(mirrored, layout, region, mPackedClasses, mPackedValues);
+      if (!mChangeFilter.accept(count, mPackedClasses, mPackedValues)) {
+        return null;
+      }
+      if (mOptions.isCompactResults()) {
+        int stride = mPostProcessor.getStride();
+        return ModelResult.ofPacked(count, stride, Arrays.copyOf(mPackedClasses, count),
+            Arrays.copyOf(mPackedValues, count * stride));
+      }
+    }
+    if (!mOptions.isCompactResults()) {
+      return ModelResult.ofMaps(mPostProcessor.process(mLabels, mirrored, layout, region));
+    }
+    // Allocated per frame because the event is serialized on another thread after the next frame may have run
+    int stride = mPostProcessor.getStride();
+    int[] classes = new int[mPostProcessor.getMaxResults()];
+    float[] values = new float[classes.length * stride];
+    int count = mPostProcessor.pack(mirrored, layout, region, classes, values);
+    return ModelResult.ofPacked(count, stride, classes, values);
+  }
+
+  /**
+   * @return the latest results of every tile merged into results for the whole frame.
+   */
+  private ModelResult postProcessTiles(boolean mirrored, PreviewLayout layout) {
+    int stride = mPostProcessor.getStride();
+    if (mOptions.isCompactResults()) {
+      int[] classes = new int[mPostProcessor.getMaxResults()];
+      float[] values = new float[classes.length * stride];
+      int count = mTiles.collect(mPostProcessor, mirrored, classes, values);
+      mPostProcessor.toView(mirrored, layout, count, values);
+      if (mChangeFilter != null && !mChangeFilter.accept(count, classes, values)) {
+        return null;
+      }
+      return ModelResult.ofPacked(count, stride, classes, values);
+    }
+    int count = mTiles.collect(mPostProcessor, mirrored, mMergedClasses, mMergedValues);
+    if (mChangeFilter != null) {
+      // The filter compares view coordinates, the maps are built from frame coordinates
+      System.arraycopy(mMergedValues, 0, mPackedValues, 0, count * stride);
+      mPostProcessor.toView(mirrored, layout, count, mPackedValues);
+      if (!mChangeFilter.accept(count, mMergedClasses, mPackedValues)) {
+        return null;
+      }
+    }
+    return ModelResult.ofMaps(mPostProcessor.toMaps(mLabels, mirrored, layout, count, mMergedClasses,
+        mMergedValues));
+  }
+
+  public LoadedModel retain() {
+    mRefCount.incrementAndGet();
+    return this;
+  }
+
+  /**
+   * Drops one hold on the model. The last one hands the interpreter back to the {@link ModelCache}, after which
+   * the model must not be used.
+   */
+  public void close() {
+    if (mRefCount.decrementAndGet() == 0) {
+      ModelCache.release(mCacheEntry);
+    }
+  }
+}
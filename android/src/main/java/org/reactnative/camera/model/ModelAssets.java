@@ -0,0 +1,28 @@
+package org.reactnative.camera.model;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+public class ModelAssets {
+
+  /**
+   * Memory-maps an uncompressed model asset so the interpreter can read it without copying.
+   */
+  public static MappedByteBuffer map(Context context, String assetPath) throws IOException {
+    AssetFileDescriptor fileDescriptor = context.getAssets().openFd(assetPath);
+    try {
+      FileInputStream inputStream = new FileInputStream(fileDescriptor.getFileDescriptor());
+      FileChannel fileChannel = inputStream.getChannel();
+      long startOffset = fileDescriptor.getStartOffset();
+      long declaredLength = fileDescriptor.getDeclaredLength();
+      return fileChannel.map(FileChannel.MapMode.READ_ONLY, startOffset, declaredLength);
+    } finally {
+      fileDescriptor.close();
+    }
+  }
+}
@@ -0,0 +1,127 @@
+package org.reactnative.camera.model;
+
+import android.content.Context;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import org.tensorflow.lite.Interpreter;
+import org.tensorflow.lite.Tensor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Measures inference latency of a model on a zero-filled input for a range of thread counts.
+ * Only the interpreter is timed, not the frame pipeline around it, and no model ships with the library: callers
+ * benchmark the model their app bundles.
+ */
+public class ModelBenchmark {
+  private static final int DEFAULT_RUNS = 20;
+  private static final int DEFAULT_WARMUP_RUNS = 3;
+
+  private final Context mContext;
+  private final ModelOptions mOptions;
+  private final int[] mThreadCounts;
+  private final int mRuns;
+  private final int mWarmupRuns;
+
+  public ModelBenchmark(Context context, ReadableMap params) {
+    mContext = context;
+    mOptions = ModelOptions.fromReadableMap(params);
+    mRuns = params.hasKey("runs") ? params.getInt("runs") : DEFAULT_RUNS;
+    mWarmupRuns = params.hasKey("warmupRuns") ? params.getInt("warmupRuns") : DEFAULT_WARMUP_RUNS;
+    if (params.hasKey("threadCounts")) {
+      ReadableArray threadCounts = params.getArray("threadCounts");
+      mThreadCounts = new int[threadCounts.size()];
+      for (int i = 0; i < mThreadCounts.length; ++i) {
+        mThreadCounts[i] = threadCounts.getInt(i);
+      }
+    } else {
+      mThreadCounts = defaultThreadCounts(Runtime.getRuntime().availableProcessors());
+    }
+  }
+
+  /**
+   * Runs the sweep on the calling thread.
+   *
+   * @return one entry per thread count with latency statistics in milliseconds.
+   */
+  public WritableArray run() throws IOException {
+    MappedByteBuffer model = ModelAssets.map(mContext, mOptions.getModelFile());
+    WritableArray results = Arguments.createArray();
+    long[] samples = new long[Math.max(1, mRuns)];
+    for (int numThreads : mThreadCounts) {
+      Interpreter interpreter = new Interpreter(model, mOptions.toInterpreterOptions(numThreads));
+      try {
+        Object[] inputs = new Object[interpreter.getInputTensorCount()];
+        for (int i = 0; i < inputs.length; ++i) {
+          inputs[i] = allocate(interpreter.getInputTensor(i));
+        }
+        Map<Integer, Object> outputs = new HashMap<>();
+        for (int i = 0; i < interpreter.getOutputTensorCount(); ++i) {
+          outputs.put(i, allocate(interpreter.getOutputTensor(i)));
+        }
+
+        for (int i = 0; i < mWarmupRuns; ++i) {
+          run(interpreter, inputs, outputs);
+        }
+        for (int i = 0; i < samples.length; ++i) {
+          long start = System.nanoTime();
+          run(interpreter, inputs, outputs);
+          samples[i] = System.nanoTime() - start;
+        }
+      } finally {
+        interpreter.close();
+      }
+
+      Arrays.sort(samples);
+      long total = 0;
+      for (long sample : samples) {
+        total += sample;
+      }
+      WritableMap result = Arguments.createMap();
+      result.putInt("numThreads", numThreads);
+      result.putDouble("meanMs", total / 1e6 / samples.length);
+      result.putDouble("minMs", samples[0] / 1e6);
+      result.putDouble("p50Ms", samples[samples.length / 2] / 1e6);
+      result.putDouble("p95Ms", samples[(int) Math.min(samples.length - 1, Math.ceil(samples.length * 0.95) - 1)] / 1e6);
+      result.putDouble("maxMs", samples[samples.length - 1] / 1e6);
+      results.pushMap(result);
+    }
+    return results;
+  }
+
+  private static void run(Interpreter interpreter, Object[] inputs, Map<Integer, Object> outputs) {
+    for (Object output : outputs.values()) {
+      ((ByteBuffer) output).rewind();
+    }
+    interpreter.runForMultipleInputsOutputs(inputs, outputs);
+  }
+
+  private static ByteBuffer allocate(Tensor tensor) {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(tensor.numBytes());
+    buffer.order(ByteOrder.nativeOrder());
+    return buffer;
+  }
+
+  private static int[] defaultThreadCounts(int processors) {
+    int count = 1;
+    for (int threads = 2; threads <= processors; threads *= 2) {
+      count++;
+    }
+    int[] threadCounts = new int[count];
+    for (int i = 0, threads = 1; i < count; ++i, threads *= 2) {
+      threadCounts[i] = threads;
+    }
+    return threadCounts;
+  }
+}
@@ -0,0 +1,123 @@
+package org.reactnative.camera.model;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.tensorflow.lite.Interpreter;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Process-wide cache of interpreters so remounting a camera view does not parse the model and allocate tensors
+ * again. Interpreters are not thread-safe, so each one is checked out by a single user at a time: {@link #acquire}
+ * hands out an idle interpreter for the same model file and interpreter options, or builds a new one, and
+ * {@link #release} checks it back in. Idle interpreters stay warm until they exceed the memory budget, at which
+ * point the least recently released are closed.
+ */
+public class ModelCache {
+  private static final String TAG = "ModelCache";
+  private static final long BUDGET_BYTES = 64L * 1024 * 1024;
+
+  public static class Entry {
+    private final String mKey;
+    private final Interpreter mInterpreter;
+    // Keeps the mapped model alive for as long as the interpreter reads from it
+    private final MappedByteBuffer mModelBuffer;
+    // Measured when the entry becomes idle, as users may resize the tensors while it is checked out
+    private long mByteSize;
+    private boolean mReused;
+
+    private Entry(String key, Interpreter interpreter, MappedByteBuffer modelBuffer) {
+      mKey = key;
+      mInterpreter = interpreter;
+      mModelBuffer = modelBuffer;
+    }
+
+    private long measureByteSize() {
+      long byteSize = mModelBuffer.capacity();
+      for (int i = 0; i < mInterpreter.getInputTensorCount(); ++i) {
+        byteSize += mInterpreter.getInputTensor(i).numBytes();
+      }
+      for (int i = 0; i < mInterpreter.getOutputTensorCount(); ++i) {
+        byteSize += mInterpreter.getOutputTensor(i).numBytes();
+      }
+      return byteSize;
+    }
+
+    public Interpreter getInterpreter() {
+      return mInterpreter;
+    }
+
+    /**
+     * @return whether the interpreter came out of the cache rather than being built for this caller.
+     */
+    public boolean wasReused() {
+      return mReused;
+    }
+  }
+
+  private static final Object sLock = new Object();
+  // Idle entries in least recently released order
+  private static final LinkedHashMap<Entry, Boolean> sIdle = new LinkedHashMap<>();
+  private static long sIdleBytes;
+
+  public static Entry acquire(Context context, ModelOptions options) throws IOException {
+    String key = options.getInterpreterKey();
+    synchronized (sLock) {
+      Iterator<Entry> iterator = sIdle.keySet().iterator();
+      while (iterator.hasNext()) {
+        Entry entry = iterator.next();
+        if (entry.mKey.equals(key)) {
+          iterator.remove();
+          sIdleBytes -= entry.mByteSize;
+          entry.mReused = true;
+          return entry;
+        }
+      }
+    }
+    // Built outside the lock: parsing a model can take hundreds of ms
+    MappedByteBuffer modelBuffer = ModelAssets.map(context, options.getModelFile());
+    Interpreter interpreter = new Interpreter(modelBuffer, options.toInterpreterOptions());
+    return new Entry(key, interpreter, modelBuffer);
+  }
+
+  /**
+   * Returns an interpreter to the cache. The caller must not use it afterwards.
+   */
+  public static void release(Entry entry) {
+    List<Entry> evicted;
+    // A batched model has grown its input since it was built
+    entry.mByteSize = entry.measureByteSize();
+    synchronized (sLock) {
+      sIdle.put(entry, Boolean.TRUE);
+      sIdleBytes += entry.mByteSize;
+      evicted = trimLocked();
+    }
+    close(evicted);
+  }
+
+  private static List<Entry> trimLocked() {
+    List<Entry> evicted = new ArrayList<>();
+    Iterator<Map.Entry<Entry, Boolean>> iterator = sIdle.entrySet().iterator();
+    while (sIdleBytes > BUDGET_BYTES && iterator.hasNext()) {
+      Entry entry = iterator.next().getKey();
+      iterator.remove();
+      sIdleBytes -= entry.mByteSize;
+      evicted.add(entry);
+    }
+    return evicted;
+  }
+
+  private static void close(List<Entry> entries) {
+    for (Entry entry : entries) {
+      Log.d(TAG, "Closing interpreter for " + entry.mKey);
+      entry.mInterpreter.close();
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package org.reactnative.camera.model;
+
+import android.content.Context;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Loads labels, builds and warms up models off the UI thread. Loads run one at a time on a shared background
+ * thread so several views starting together do not compete for memory bandwidth.
+ */
+public class ModelLoader {
+  public interface Callback {
+    /**
+     * Called on the loader thread. The callee owns {@code pipeline} and must close it when done with it.
+     */
+    void onModelLoaded(ModelPipeline pipeline, double loadMs, double warmupMs);
+
+    void onModelLoadFailed(Exception e);
+  }
+
+  private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+    @Override
+    public Thread newThread(Runnable runnable) {
+      return new Thread(runnable, "RNCamera-Model-Loader");
+    }
+  });
+
+  /**
+   * Builds a pipeline with one model per entry of {@code options}.
+   *
+   * @param reuse already loaded models to use in place of loading entry {@code i}, or {@code null} entries.
+   *              The loader takes over the caller's hold on each of them.
+   */
+  public static void load(final Context context, final List<ModelOptions> options, final LoadedModel[] reuse,
+                          final Callback callback) {
+    sExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        LoadedModel[] models = reuse.clone();
+        long loadNs = 0;
+        long warmupNs = 0;
+        try {
+          for (int i = 0; i < models.length; ++i) {
+            if (models[i] != null) {
+              continue;
+            }
+            long startNs = System.nanoTime();
+            ModelOptions modelOptions = options.get(i);
+            String[] labels = LabelRegistry.get(context, modelOptions.getLabelFile());
+            if (labels == null) {
+              throw new IOException("Could not read label file " + modelOptions.getLabelFile());
+            }
+            models[i] = LoadedModel.load(context, modelOptions, labels);
+            long loadedNs = System.nanoTime();
+            // A cached interpreter has already run, so its tensors and kernels are prepared
+            if (!models[i].wasCached()) {
+              models[i].warmUp(modelOptions.getWarmupRuns());
+            }
+            loadNs += loadedNs - startNs;
+            warmupNs += System.nanoTime() - loadedNs;
+          }
+        } catch (Exception e) {
+          for (LoadedModel model : models) {
+            if (model != null) {
+              model.close();
+            }
+          }
+          callback.onModelLoadFailed(e);
+          return;
+        }
+        callback.onModelLoaded(new ModelPipeline(models), loadNs / 1e6, warmupNs / 1e6);
+      }
+    });
+  }
+}
@@ -0,0 +1,458 @@
+package org.reactnative.camera.model;
+
+import android.graphics.RectF;
+
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableType;
+import com.google.android.cameraview.Size;
+
+import org.reactnative.camera.utils.ObjectUtils;
+import org.tensorflow.lite.Interpreter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Parsed {@code modelParams} prop.
+ */
+public class ModelOptions {
+  private static final int DEFAULT_NUM_RESULTS = 5;
+  private static final float DEFAULT_THRESHOLD = 0.001f;
+  private static final int DEFAULT_NUM_THREADS = 1;
+  private static final int DEFAULT_WARMUP_RUNS = 1;
+  private static final float DEFAULT_CHANGE_TOLERANCE = 0.02f;
+  private static final float DEFAULT_HYSTERESIS = 0.05f;
+  private static final float DEFAULT_TILE_OVERLAP = 0.25f;
+  // In dp
+  private static final float DEFAULT_BOX_CHANGE_TOLERANCE = 4f;
+  // ImageNet statistics in 0-255 RGB order
+  private static final float[] DEFAULT_MEAN = {123.68f, 116.779f, 103.939f};
+  private static final float[] DEFAULT_STD = {58.393f, 57.12f, 57.375f};
+  private static final float[] DEFAULT_INPUT_RANGE = {0f, 255f};
+
+  private final String mModelFile;
+  private final String mLabelFile;
+  private final int mNumResults;
+  private final float mThreshold;
+  private final Boolean mSoftmax;
+  private final int mNumThreads;
+  private final boolean mUseXNNPACK;
+  private final boolean mAllowFp16;
+  private final float[] mMean;
+  private final float[] mStd;
+  private final boolean mBgr;
+  private final float[] mInputRange;
+  private final InputSpec.Layout mInputLayout;
+  private final boolean mAnalyzePreview;
+  private final long mMinIntervalMs;
+  private final boolean mAdaptiveFps;
+  private final int mWarmupRuns;
+  private final int mEveryNFrames;
+  private final String mOutputType;
+  private final int mLabelOffset;
+  private final boolean mCompactResults;
+  private final boolean mEmitOnChange;
+  private final int mSmoothingWindow;
+  private final float mHysteresis;
+  private final float mChangeTolerance;
+  private final float mBoxChangeTolerance;
+  private final Size mAnalysisSize;
+  private final RectF mRoi;
+  private final int mTileRows;
+  private final int mTileCols;
+  private final float mTileOverlap;
+  private final boolean mBatchTiles;
+  // Detection output indices as boxes, classes, scores, count; null to tell them apart from the outputs
+  private final int[] mOutputIndices;
+
+  private ModelOptions(ReadableMap map) {
+    mModelFile = map.hasKey("file") ? map.getString("file") : null;
+    mLabelFile = map.hasKey("label") ? map.getString("label") : null;
+    mNumResults = map.hasKey("numResults") ? map.getInt("numResults") : DEFAULT_NUM_RESULTS;
+    mThreshold = map.hasKey("threshold") ? (float) map.getDouble("threshold") : DEFAULT_THRESHOLD;
+    mSoftmax = map.hasKey("softmax") && !map.isNull("softmax") ? map.getBoolean("softmax") : null;
+    mNumThreads = map.hasKey("numThreads") ? map.getInt("numThreads") : DEFAULT_NUM_THREADS;
+    mUseXNNPACK = map.hasKey("useXNNPACK") && map.getBoolean("useXNNPACK");
+    mAllowFp16 = map.hasKey("allowFp16") && map.getBoolean("allowFp16");
+    mMean = readChannels(map, "mean", DEFAULT_MEAN);
+    mStd = readChannels(map, "std", DEFAULT_STD);
+    mBgr = map.hasKey("channelOrder") && "BGR".equalsIgnoreCase(map.getString("channelOrder"));
+    mInputRange = readInputRange(map);
+    mInputLayout = map.hasKey("inputLayout") && !map.isNull("inputLayout")
+        ? InputSpec.Layout.valueOf(map.getString("inputLayout").toUpperCase()) : null;
+    if (map.hasKey("minIntervalMs")) {
+      mMinIntervalMs = Math.max(0, map.getInt("minIntervalMs"));
+    } else if (map.hasKey("maxFps") && map.getDouble("maxFps") > 0) {
+      mMinIntervalMs = (long) Math.ceil(1000 / map.getDouble("maxFps"));
+    } else {
+      mMinIntervalMs = 0;
+    }
+    mAdaptiveFps = map.hasKey("adaptiveFps") && map.getBoolean("adaptiveFps");
+    mWarmupRuns = map.hasKey("warmupRuns") ? Math.max(0, map.getInt("warmupRuns")) : DEFAULT_WARMUP_RUNS;
+    mOutputType = map.hasKey("outputType") && !map.isNull("outputType") ? map.getString("outputType") : null;
+    mLabelOffset = map.hasKey("labelOffset") ? map.getInt("labelOffset") : 0;
+    mSmoothingWindow = map.hasKey("smoothingWindow") ? Math.max(0, map.getInt("smoothingWindow")) : 0;
+    mHysteresis = map.hasKey("hysteresis") ? (float) map.getDouble("hysteresis") : DEFAULT_HYSTERESIS;
+    mEmitOnChange = map.hasKey("emitOnChange") && map.getBoolean("emitOnChange");
+    mChangeTolerance = map.hasKey("changeTolerance")
+        ? (float) map.getDouble("changeTolerance") : DEFAULT_CHANGE_TOLERANCE;
+    mBoxChangeTolerance = map.hasKey("boxChangeTolerance")
+        ? (float) map.getDouble("boxChangeTolerance") : DEFAULT_BOX_CHANGE_TOLERANCE;
+    mCompactResults = map.hasKey("resultFormat") && "compact".equals(map.getString("resultFormat"));
+    mEveryNFrames = map.hasKey("everyNFrames") ? Math.max(1, map.getInt("everyNFrames")) : 1;
+    mAnalyzePreview = map.hasKey("analysisSize") && map.getType("analysisSize") == ReadableType.String
+        && "preview".equals(map.getString("analysisSize"));
+    if (map.hasKey("roi") && !map.isNull("roi")) {
+      ReadableMap roi = map.getMap("roi");
+      float x = (float) roi.getDouble("x");
+      float y = (float) roi.getDouble("y");
+      mRoi = new RectF(x, y, x + (float) roi.getDouble("width"), y + (float) roi.getDouble("height"));
+    } else {
+      mRoi = null;
+    }
+    if (map.hasKey("outputIndices") && !map.isNull("outputIndices")) {
+      ReadableMap indices = map.getMap("outputIndices");
+      mOutputIndices = new int[] {
+          indices.getInt("boxes"), indices.getInt("classes"), indices.getInt("scores"), indices.getInt("count")
+      };
+    } else {
+      mOutputIndices = null;
+    }
+    if (map.hasKey("tiles") && !map.isNull("tiles")) {
+      ReadableMap tiles = map.getMap("tiles");
+      mTileRows = tiles.hasKey("rows") ? Math.max(1, tiles.getInt("rows")) : 1;
+      mTileCols = tiles.hasKey("cols") ? Math.max(1, tiles.getInt("cols")) : 1;
+      mTileOverlap = tiles.hasKey("overlap")
+          ? Math.max(0f, Math.min(0.9f, (float) tiles.getDouble("overlap"))) : DEFAULT_TILE_OVERLAP;
+      mBatchTiles = !tiles.hasKey("batch") || tiles.getBoolean("batch");
+    } else {
+      mTileRows = 1;
+      mTileCols = 1;
+      mTileOverlap = 0f;
+      mBatchTiles = false;
+    }
+    if (map.hasKey("analysisSize") && map.getType("analysisSize") == ReadableType.Map) {
+      ReadableMap size = map.getMap("analysisSize");
+      mAnalysisSize = new Size(size.getInt("width"), size.getInt("height"));
+    } else {
+      mAnalysisSize = null;
+    }
+  }
+
+  /**
+   * Reads a per-channel value given either as one number for all channels or as an {@code [r, g, b]} array.
+   */
+  private static float[] readChannels(ReadableMap map, String key, float[] fallback) {
+    if (!map.hasKey(key) || map.isNull(key)) {
+      return fallback;
+    }
+    switch (map.getType(key)) {
+      case Number:
+        float value = (float) map.getDouble(key);
+        return new float[]{value, value, value};
+      case Array:
+        ReadableArray array = map.getArray(key);
+        if (array.size() == 1) {
+          float single = (float) array.getDouble(0);
+          return new float[]{single, single, single};
+        }
+        if (array.size() == 3) {
+          return new float[]{(float) array.getDouble(0), (float) array.getDouble(1), (float) array.getDouble(2)};
+        }
+        throw new IllegalArgumentException(key + " must have 1 or 3 values");
+      default:
+        throw new IllegalArgumentException(key + " must be a number or an array");
+    }
+  }
+
+  private static float[] readInputRange(ReadableMap map) {
+    if (!map.hasKey("inputRange") || map.isNull("inputRange")) {
+      return DEFAULT_INPUT_RANGE;
+    }
+    ReadableArray array = map.getArray("inputRange");
+    if (array.size() != 2) {
+      throw new IllegalArgumentException("inputRange must be [min, max]");
+    }
+    return new float[]{(float) array.getDouble(0), (float) array.getDouble(1)};
+  }
+
+  public static ModelOptions fromReadableMap(ReadableMap map) {
+    return new ModelOptions(map);
+  }
+
+  /**
+   * Parses a {@code modelParams} list, one entry per model.
+   */
+  public static List<ModelOptions> fromReadableArray(ReadableArray array) {
+    List<ModelOptions> options = new ArrayList<>(array.size());
+    for (int i = 0; i < array.size(); ++i) {
+      options.add(new ModelOptions(array.getMap(i)));
+    }
+    return options;
+  }
+
+  public String getModelFile() {
+    return mModelFile;
+  }
+
+  public String getLabelFile() {
+    return mLabelFile;
+  }
+
+  public int getNumResults() {
+    return mNumResults;
+  }
+
+  public float getThreshold() {
+    return mThreshold;
+  }
+
+  /**
+   * @return whether the model outputs logits that need a softmax, or {@code null} to decide from the output type.
+   */
+  public Boolean getSoftmax() {
+    return mSoftmax;
+  }
+
+  public int getNumThreads() {
+    return mNumThreads;
+  }
+
+  public boolean getUseXNNPACK() {
+    return mUseXNNPACK;
+  }
+
+  public boolean getAllowFp16() {
+    return mAllowFp16;
+  }
+
+  /**
+   * @return per-channel mean in RGB order, applied after pixels are scaled to {@link #getInputRange()}.
+   */
+  public float[] getMean() {
+    return mMean;
+  }
+
+  /**
+   * @return per-channel standard deviation in RGB order.
+   */
+  public float[] getStd() {
+    return mStd;
+  }
+
+  /**
+   * @return whether the model expects channels in BGR order.
+   */
+  public boolean isBgr() {
+    return mBgr;
+  }
+
+  /**
+   * @return {@code [min, max]} that 0-255 pixel values are linearly mapped to before mean and std are applied.
+   */
+  public float[] getInputRange() {
+    return mInputRange;
+  }
+
+  /**
+   * @return the forced input tensor layout, or {@code null} to detect it from the input shape.
+   */
+  public InputSpec.Layout getInputLayout() {
+    return mInputLayout;
+  }
+
+  /**
+   * @return the minimum time between processed frames, from {@code minIntervalMs} or {@code maxFps}; 0 for no limit.
+   */
+  public long getMinIntervalMs() {
+    return mMinIntervalMs;
+  }
+
+  /**
+   * @return whether the frame interval should also follow inference latency and device conditions.
+   */
+  public boolean isAdaptiveFps() {
+    return mAdaptiveFps;
+  }
+
+  /**
+   * @return how many inferences to run on a blank input after loading, before the first frame.
+   */
+  public int getWarmupRuns() {
+    return mWarmupRuns;
+  }
+
+  /**
+   * @return {@code "classification"} or {@code "detection"}, or {@code null} to decide from the model outputs.
+   */
+  public String getOutputType() {
+    return mOutputType;
+  }
+
+  /**
+   * @return added to class indices before looking up labels, e.g. 1 for label files that start with a
+   * background entry the model does not output.
+   */
+  public int getLabelOffset() {
+    return mLabelOffset;
+  }
+
+  /**
+   * @return whether results are sent as class indices and packed values instead of a map per result.
+   */
+  public boolean isCompactResults() {
+    return mCompactResults;
+  }
+
+  /**
+   * @return the number of frames classification scores are averaged over; 0 or 1 turns smoothing off.
+   */
+  public int getSmoothingWindow() {
+    return mSmoothingWindow;
+  }
+
+  /**
+   * @return how much a smoothed score must beat the current top label's to replace it.
+   */
+  public float getHysteresis() {
+    return mHysteresis;
+  }
+
+  /**
+   * @return whether results are only emitted when they differ from the last emitted ones.
+   */
+  public boolean isEmitOnChange() {
+    return mEmitOnChange;
+  }
+
+  /**
+   * @return how much a score may move before the results count as changed.
+   */
+  public float getChangeTolerance() {
+    return mChangeTolerance;
+  }
+
+  /**
+   * @return how many dp a detection box edge may move before the results count as changed.
+   */
+  public float getBoxChangeTolerance() {
+    return mBoxChangeTolerance;
+  }
+
+  /**
+   * @return run the model on every Nth frame that reaches the model pipeline; 1 runs it on all of them.
+   */
+  public int getEveryNFrames() {
+    return mEveryNFrames;
+  }
+
+  /**
+   * @return the size scan frames need to cover: the explicit {@code analysisSize}, the model input size by
+   * default, or {@code null} when {@code analysisSize} is {@code 'preview'}.
+   */
+  public Size getAnalysisSize(InputSpec spec) {
+    if (mAnalyzePreview) {
+      return null;
+    }
+    return mAnalysisSize != null ? mAnalysisSize : new Size(spec.getWidth(), spec.getHeight());
+  }
+
+  /**
+   * @return the region of the view the model looks at, normalized to the view size, or {@code null} for the
+   * whole frame. The region can change without reloading the model.
+   */
+  public RectF getRoi() {
+    return mRoi;
+  }
+
+  /**
+   * @return the indices of the boxes, classes, scores and count outputs of a detection model, or {@code null} to
+   * tell them apart from their shapes and values.
+   */
+  public int[] getOutputIndices() {
+    return mOutputIndices;
+  }
+
+  public int getTileRows() {
+    return mTileRows;
+  }
+
+  public int getTileCols() {
+    return mTileCols;
+  }
+
+  /**
+   * @return the number of tiles the frame, or the region of interest, is split into; 1 runs the model on it whole.
+   */
+  public int getTileCount() {
+    return mTileRows * mTileCols;
+  }
+
+  /**
+   * @return how much neighbouring tiles overlap, as a fraction of the tile size.
+   */
+  public float getTileOverlap() {
+    return mTileOverlap;
+  }
+
+  /**
+   * @return whether to try running all tiles in one batched inference before falling back to one tile per frame.
+   */
+  public boolean isBatchTiles() {
+    return mBatchTiles && getTileCount() > 1;
+  }
+
+  /**
+   * @return whether a model loaded with {@code other} would behave exactly like one loaded with these options,
+   * so switching between the two does not need a new model. Frame rate, analysis size and region of interest are
+   * applied separately.
+   */
+  public boolean isSameModel(ModelOptions other) {
+    return other != null
+        && getInterpreterKey().equals(other.getInterpreterKey())
+        && (mLabelFile == null ? other.mLabelFile == null : mLabelFile.equals(other.mLabelFile))
+        && mNumResults == other.mNumResults
+        && mThreshold == other.mThreshold
+        && (mSoftmax == null ? other.mSoftmax == null : mSoftmax.equals(other.mSoftmax))
+        && Arrays.equals(mMean, other.mMean)
+        && Arrays.equals(mStd, other.mStd)
+        && mBgr == other.mBgr
+        && Arrays.equals(mInputRange, other.mInputRange)
+        && mInputLayout == other.mInputLayout
+        && ObjectUtils.equals(mOutputType, other.mOutputType)
+        && mLabelOffset == other.mLabelOffset
+        && Arrays.equals(mOutputIndices, other.mOutputIndices)
+        && mCompactResults == other.mCompactResults
+        && mSmoothingWindow == other.mSmoothingWindow
+        && mHysteresis == other.mHysteresis
+        && mEmitOnChange == other.mEmitOnChange
+        && mChangeTolerance == other.mChangeTolerance
+        && mBoxChangeTolerance == other.mBoxChangeTolerance
+        && mTileRows == other.mTileRows
+        && mTileCols == other.mTileCols
+        && mTileOverlap == other.mTileOverlap;
+  }
+
+  /**
+   * @return a key identifying the model file together with every option that shapes the interpreter. Batched
+   * tiles resize the input tensor, so those interpreters are not interchangeable with unbatched ones.
+   */
+  public String getInterpreterKey() {
+    String key = mModelFile + "|threads=" + mNumThreads + "|xnnpack=" + mUseXNNPACK + "|fp16=" + mAllowFp16;
+    return isBatchTiles() ? key + "|batch=" + getTileCount() : key;
+  }
+
+  public Interpreter.Options toInterpreterOptions() {
+    return toInterpreterOptions(mNumThreads);
+  }
+
+  public Interpreter.Options toInterpreterOptions(int numThreads) {
+    Interpreter.Options options = new Interpreter.Options();
+    options.setNumThreads(numThreads);
+    options.setUseXNNPACK(mUseXNNPACK);
+    options.setAllowFp16PrecisionForFp32(mAllowFp16);
+    return options;
+  }
+}
@@ -0,0 +1,199 @@
+package org.reactnative.camera.model;
+
+import android.graphics.RectF;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.google.android.cameraview.Size;
+import com.google.android.cameraview.YuvFrame;
+
+import org.reactnative.camera.utils.ObjectUtils;
+import org.reactnative.camera.utils.PreviewLayout;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The models a camera view runs on its frames, in {@code modelParams} order. Models whose inputs are encoded
+ * identically and cover the same region of interest share one input buffer, so a frame is preprocessed once
+ * per distinct input rather than once per model. Each model runs on its own every-Nth-frame schedule. Only the
+ * model worker thread may use it.
+ */
+public class ModelPipeline {
+  private final LoadedModel[] mModels;
+  private final List<ModelOptions> mOptions;
+  private final String[] mFiles;
+  // Whether models i and j encode their inputs identically
+  private final boolean[][] mEncodesLike;
+  // Index of the model whose input buffer model i reads on the current frame, -1 if it has none
+  private final int[] mInputSources;
+  private long mFrameIndex = -1;
+
+  /**
+   * Takes over the caller's hold on each of {@code models}.
+   */
+  public ModelPipeline(LoadedModel[] models) {
+    mModels = models;
+    mOptions = new ArrayList<>(models.length);
+    mFiles = new String[models.length];
+    mEncodesLike = new boolean[models.length][models.length];
+    mInputSources = new int[models.length];
+    for (int i = 0; i < models.length; ++i) {
+      mOptions.add(models[i].getOptions());
+      mFiles[i] = models[i].getOptions().getModelFile();
+      for (int j = 0; j < i; ++j) {
+        mEncodesLike[i][j] = models[i].sharesInputWith(models[j]);
+      }
+    }
+  }
+
+  public int size() {
+    return mModels.length;
+  }
+
+  public LoadedModel get(int index) {
+    return mModels[index];
+  }
+
+  /**
+   * @return the options each model was loaded with, in pipeline order.
+   */
+  public List<ModelOptions> getOptions() {
+    return mOptions;
+  }
+
+  /**
+   * @return the model file of each model, in pipeline order.
+   */
+  public String[] getFiles() {
+    return mFiles;
+  }
+
+  /**
+   * @return the index of the next frame, counting every frame that reaches the pipeline.
+   */
+  public long nextFrame() {
+    return ++mFrameIndex;
+  }
+
+  public boolean isDue(int index, long frameIndex) {
+    return frameIndex % mModels[index].getOptions().getEveryNFrames() == 0;
+  }
+
+  /**
+   * @return whether any model is due on frame {@code frameIndex}.
+   */
+  public boolean hasDueModels(long frameIndex) {
+    for (int i = 0; i < mModels.length; ++i) {
+      if (isDue(i, frameIndex)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Converts the frame into the input buffer of every model due on {@code frameIndex}, once per shared buffer.
+   * Sharing is decided per frame because regions of interest can change between frames. A model whose region of
+   * interest lies outside the visible preview gets no input; see {@link #hasInput}.
+   *
+   * @return {@code false} if the frame could not be converted.
+   */
+  public boolean prepare(YuvFrame frame, int rotation, int facing, PreviewLayout layout, long frameIndex) {
+    for (int i = 0; i < mModels.length; ++i) {
+      mInputSources[i] = -1;
+      if (!isDue(i, frameIndex)) {
+        continue;
+      }
+      RectF roi = mModels[i].getRoi();
+      for (int j = 0; j < i; ++j) {
+        if (mInputSources[j] == j && mEncodesLike[i][j] && ObjectUtils.equals(roi, mModels[j].getRoi())) {
+          mInputSources[i] = j;
+          break;
+        }
+      }
+      if (mInputSources[i] < 0) {
+        if (!mModels[i].prepare(frame, rotation, facing, layout)) {
+          return false;
+        }
+        mInputSources[i] = mModels[i].hasInput() ? i : -1;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return whether model {@code index} has an input for the current frame to run on.
+   */
+  public boolean hasInput(int index) {
+    return mInputSources[index] >= 0;
+  }
+
+  /**
+   * Runs model {@code index} on the input prepared for the current frame.
+   */
+  public void run(int index) {
+    mModels[index].run(mModels[mInputSources[index]].getInput());
+  }
+
+  /**
+   * @return the results of model {@code index} on the current frame, or {@code null} if they did not change.
+   */
+  public ModelResult postProcess(int index, int facing, PreviewLayout layout) {
+    RectF region = mModels[mInputSources[index]].getInputRegion();
+    return mModels[index].postProcess(facing, layout, region);
+  }
+
+  /**
+   * @param options the current {@code modelParams}, in pipeline order.
+   * @return the size scan frames need to cover so that every model gets enough pixels, or {@code null} to
+   * analyze at preview size. A region of interest, and each tile of a tiled model, needs proportionally larger
+   * frames to fill the model input.
+   */
+  public Size getAnalysisSize(List<ModelOptions> options) {
+    int width = 0;
+    int height = 0;
+    for (int i = 0; i < mModels.length; ++i) {
+      Size size = options.get(i).getAnalysisSize(mModels[i].getInputSpec());
+      if (size == null) {
+        return null;
+      }
+      RectF roi = options.get(i).getRoi();
+      float roiWidth = roi != null && roi.width() > 0 ? Math.min(1f, roi.width()) : 1f;
+      float roiHeight = roi != null && roi.height() > 0 ? Math.min(1f, roi.height()) : 1f;
+      // Tiles overlapping by a fraction o: n of them span n - (n - 1) * o tile sizes
+      float overlap = options.get(i).getTileOverlap();
+      int cols = options.get(i).getTileCols();
+      int rows = options.get(i).getTileRows();
+      float tilesWide = cols - (cols - 1) * overlap;
+      float tilesHigh = rows - (rows - 1) * overlap;
+      width = Math.max(width, (int) Math.ceil(size.getWidth() * tilesWide / roiWidth));
+      height = Math.max(height, (int) Math.ceil(size.getHeight() * tilesHigh / roiHeight));
+    }
+    return new Size(width, height);
+  }
+
+  /**
+   * @return the first model's description for the {@code onModelReady} event, with every model under
+   * {@code models}.
+   */
+  public WritableMap describe() {
+    WritableArray models = Arguments.createArray();
+    for (LoadedModel model : mModels) {
+      models.pushMap(model.describe());
+    }
+    WritableMap description = mModels[0].describe();
+    description.putArray("models", models);
+    return description;
+  }
+
+  /**
+   * Drops the pipeline's hold on every model.
+   */
+  public void close() {
+    for (LoadedModel model : mModels) {
+      model.close();
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package org.reactnative.camera.model;
+
+import android.graphics.RectF;
+
+import com.facebook.react.bridge.WritableMap;
+
+import org.reactnative.camera.utils.PreviewLayout;
+
+import java.util.Map;
+
+/**
+ * Turns the output tensors of a model into {@code onModelProcessed} results. Output arrays are allocated once
+ * and bound to the interpreter outputs, so running the model does not allocate.
+ */
+public interface ModelPostProcessor {
+  /**
+   * Puts the arrays the interpreter writes each output tensor into into {@code outputs}, keyed by output index.
+   */
+  void bindOutputs(Map<Integer, Object> outputs);
+
+  /**
+   * Selects the results of the last run from the output row set by {@link #setBatchIndex}. Runs once per run,
+   * before {@link #process} and {@link #pack}, which only read the selection; state kept across frames, such
+   * as smoothed scores, advances here.
+   *
+   * @return the number of results.
+   */
+  int select();
+
+  /**
+   * Builds the results of the last {@link #select}.
+   *
+   * @param mirrored whether the preview is mirrored, as it is for the front camera.
+   * @param layout where the preview sits in the view, or {@code null} before the view is laid out.
+   * @param region the part of the upright frame the model input covered, normalized to its size.
+   */
+  WritableMap[] process(String[] labels, boolean mirrored, PreviewLayout layout, RectF region);
+
+  /**
+   * @return the most results {@link #pack} can produce.
+   */
+  int getMaxResults();
+
+  /**
+   * @return how many values {@link #pack} writes per result.
+   */
+  int getStride();
+
+  /**
+   * Writes the results of the last {@link #select} in compact form: the class index of result {@code i} into {@code classes[i]} and its
+   * {@link #getStride()} values from {@code values[i * stride]}.
+   *
+   * @return the number of results.
+   */
+  int pack(boolean mirrored, PreviewLayout layout, RectF region, int[] classes, float[] values);
+
+  /**
+   * @return how many inputs one run of the model processes, one output row each.
+   */
+  int getBatchSize();
+
+  /**
+   * Selects the output row {@link #process} and {@link #pack} read next.
+   */
+  void setBatchIndex(int index);
+
+  /**
+   * Merges the packed results of {@code tiles} tiles, packed without a layout so boxes are normalized to the
+   * upright frame, into at most {@link #getMaxResults()} results in the same form.
+   *
+   * @return the number of merged results.
+   */
+  int merge(int tiles, int[] counts, int[][] classes, float[][] values, int[] mergedClasses, float[] mergedValues);
+
+  /**
+   * Builds the results {@link #process} would for {@code count} results packed without a layout.
+   */
+  WritableMap[] toMaps(String[] labels, boolean mirrored, PreviewLayout layout, int count, int[] classes,
+                       float[] values);
+
+  /**
+   * Converts {@code count} results packed without a layout into the values {@link #pack} writes with
+   * {@code layout}.
+   */
+  void toView(boolean mirrored, PreviewLayout layout, int count, float[] values);
+}
@@ -0,0 +1,36 @@
+package org.reactnative.camera.model;
+
+import com.facebook.react.bridge.WritableMap;
+
+/**
+ * What one model produced for one frame: either a map per result, or in compact mode class indices plus a
+ * packed array of {@code stride} values per result, whose labels were sent once in {@code onModelReady}.
+ */
+public class ModelResult {
+  // Results as maps, null in compact mode
+  public final WritableMap[] maps;
+  public final int count;
+  public final int stride;
+  public final int[] classes;
+  public final float[] values;
+
+  private ModelResult(WritableMap[] maps, int count, int stride, int[] classes, float[] values) {
+    this.maps = maps;
+    this.count = count;
+    this.stride = stride;
+    this.classes = classes;
+    this.values = values;
+  }
+
+  public static ModelResult ofMaps(WritableMap[] maps) {
+    return new ModelResult(maps, maps.length, 0, null, null);
+  }
+
+  public static ModelResult ofPacked(int count, int stride, int[] classes, float[] values) {
+    return new ModelResult(null, count, stride, classes, values);
+  }
+
+  public boolean isCompact() {
+    return maps == null;
+  }
+}
@@ -0,0 +1,58 @@
+package org.reactnative.camera.model;
+
+/**
+ * Suppresses results that match the last emitted ones: the same classes in the same order, scores within
+ * {@code changeTolerance} and, for detections, box edges within {@code boxChangeTolerance} dp. Works on the
+ * packed form written by {@link ModelPostProcessor#pack}, where the first value of each result is its score.
+ */
+public class ResultChangeFilter {
+  private final int mStride;
+  private final float mScoreTolerance;
+  private final float mBoxTolerance;
+
+  private final int[] mLastClasses;
+  private final float[] mLastValues;
+  private int mLastCount = -1;
+
+  public ResultChangeFilter(ModelOptions options, int maxResults, int stride) {
+    mStride = stride;
+    mScoreTolerance = options.getChangeTolerance();
+    mBoxTolerance = options.getBoxChangeTolerance();
+    mLastClasses = new int[maxResults];
+    mLastValues = new float[maxResults * stride];
+  }
+
+  /**
+   * @return whether the results differ from the last accepted ones, in which case they become the last ones.
+   */
+  public boolean accept(int count, int[] classes, float[] values) {
+    if (!hasChanged(count, classes, values)) {
+      return false;
+    }
+    mLastCount = count;
+    System.arraycopy(classes, 0, mLastClasses, 0, count);
+    System.arraycopy(values, 0, mLastValues, 0, count * mStride);
+    return true;
+  }
+
+  private boolean hasChanged(int count, int[] classes, float[] values) {
+    if (count != mLastCount) {
+      return true;
+    }
+    for (int i = 0; i < count; ++i) {
+      if (classes[i] != mLastClasses[i]) {
+        return true;
+      }
+      int offset = i * mStride;
+      if (Math.abs(values[offset] - mLastValues[offset]) > mScoreTolerance) {
+        return true;
+      }
+      for (int v = offset + 1; v < offset + mStride; ++v) {
+        if (Math.abs(values[v] - mLastValues[v]) > mBoxTolerance) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+}
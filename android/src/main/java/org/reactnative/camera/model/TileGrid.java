@@ -0,0 +1,139 @@
+package org.reactnative.camera.model;
+
+import android.graphics.RectF;
+
+import com.google.android.cameraview.YuvFrame;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Splits the frame, or the region of interest, into overlapping tiles so small objects keep enough pixels at the
+ * model input size. When the model takes all tiles as one batch, every tile is converted into its slice of the
+ * input and they run together; otherwise one tile runs per frame, in turn. Either way the latest results of every
+ * tile are merged into results for the whole frame. Only the model worker thread may use it.
+ */
+public class TileGrid {
+  private final int mCount;
+  private final boolean mBatched;
+  // Tiles normalized to the region they split, in row-major order
+  private final RectF[] mTiles;
+  // Part of the upright frame each tile last sampled, normalized to its size
+  private final RectF[] mTileRegions;
+  // Slice of the batched input each tile is converted into, null when tiles take turns
+  private final ByteBuffer[] mTileInputs;
+  // Latest packed results of every tile; tiles that have not run yet have none
+  private final int[] mCounts;
+  private final int[][] mClasses;
+  private final float[][] mValues;
+  private final RectF mRegion = new RectF();
+  private int mNextTile;
+  private int mPreparedTile;
+
+  /**
+   * @param input the model input, holding a batch of {@code batchSize} inputs of {@code inputBytes} each.
+   */
+  public TileGrid(ModelOptions options, ModelPostProcessor postProcessor, ByteBuffer input, int inputBytes,
+                  int batchSize) {
+    int rows = options.getTileRows();
+    int cols = options.getTileCols();
+    float overlap = options.getTileOverlap();
+    mCount = rows * cols;
+    mBatched = batchSize == mCount;
+    mTiles = new RectF[mCount];
+    mTileRegions = new RectF[mCount];
+    mTileInputs = mBatched ? new ByteBuffer[mCount] : null;
+    mCounts = new int[mCount];
+    mClasses = new int[mCount][postProcessor.getMaxResults()];
+    mValues = new float[mCount][postProcessor.getMaxResults() * postProcessor.getStride()];
+
+    // n tiles of size s overlapping by s * overlap span exactly 1: s * (n - (n - 1) * overlap) = 1
+    float width = 1f / (cols - (cols - 1) * overlap);
+    float height = 1f / (rows - (rows - 1) * overlap);
+    for (int row = 0; row < rows; ++row) {
+      for (int col = 0; col < cols; ++col) {
+        int tile = row * cols + col;
+        float left = col * width * (1f - overlap);
+        float top = row * height * (1f - overlap);
+        mTiles[tile] = new RectF(left, top, Math.min(1f, left + width), Math.min(1f, top + height));
+        mTileRegions[tile] = new RectF();
+        if (mBatched) {
+          ByteBuffer slice = input.duplicate();
+          slice.position(tile * inputBytes);
+          slice.limit((tile + 1) * inputBytes);
+          mTileInputs[tile] = slice.slice().order(ByteOrder.nativeOrder());
+        }
+      }
+    }
+  }
+
+  /**
+   * @return whether all tiles run in one batched inference.
+   */
+  public boolean isBatched() {
+    return mBatched;
+  }
+
+  /**
+   * Converts every tile into its slice of the batched input, or the next tile in turn into {@code input}.
+   *
+   * @param region the part of the upright frame to split, normalized to its size, or {@code null} for all of it.
+   * @return {@code false} if a tile could not be converted.
+   */
+  public boolean prepare(YuvPreprocessor preprocessor, YuvFrame frame, int rotation, RectF region,
+                         ByteBuffer input) {
+    if (mBatched) {
+      for (int tile = 0; tile < mCount; ++tile) {
+        if (!prepareTile(preprocessor, frame, rotation, region, tile, mTileInputs[tile])) {
+          return false;
+        }
+      }
+      return true;
+    }
+    mPreparedTile = mNextTile;
+    mNextTile = (mNextTile + 1) % mCount;
+    return prepareTile(preprocessor, frame, rotation, region, mPreparedTile, input);
+  }
+
+  private boolean prepareTile(YuvPreprocessor preprocessor, YuvFrame frame, int rotation, RectF region, int tile,
+                              ByteBuffer out) {
+    RectF bounds = mTiles[tile];
+    if (region == null) {
+      mRegion.set(bounds);
+    } else {
+      mRegion.set(
+          region.left + bounds.left * region.width(),
+          region.top + bounds.top * region.height(),
+          region.left + bounds.right * region.width(),
+          region.top + bounds.bottom * region.height());
+    }
+    if (!preprocessor.process(frame, rotation, mRegion, out)) {
+      return false;
+    }
+    mTileRegions[tile].set(preprocessor.getRegion());
+    return true;
+  }
+
+  /**
+   * Packs the results of the tiles that just ran and merges them with the latest results of the others.
+   *
+   * @return the number of merged results, packed without a layout into {@code classes} and {@code values}.
+   */
+  public int collect(ModelPostProcessor postProcessor, boolean mirrored, int[] classes, float[] values) {
+    if (mBatched) {
+      for (int tile = 0; tile < mCount; ++tile) {
+        collectTile(postProcessor, mirrored, tile);
+      }
+      postProcessor.setBatchIndex(0);
+    } else {
+      collectTile(postProcessor, mirrored, mPreparedTile);
+    }
+    return postProcessor.merge(mCount, mCounts, mClasses, mValues, classes, values);
+  }
+
+  private void collectTile(ModelPostProcessor postProcessor, boolean mirrored, int tile) {
+    postProcessor.setBatchIndex(mBatched ? tile : 0);
+    postProcessor.select();
+    mCounts[tile] = postProcessor.pack(mirrored, null, mTileRegions[tile], mClasses[tile], mValues[tile]);
+  }
+}
@@ -0,0 +1,230 @@
+package org.reactnative.camera.model;
+
+import android.graphics.RectF;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.google.android.cameraview.YuvFrame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts a YUV preview frame straight into a model input tensor.
+ * Crop, resize (nearest neighbour), rotation, colour conversion and encoding into the tensor layout happen
+ * in a single pass driven by sampling tables that are only rebuilt when the frame geometry or the region
+ * changes. Only the sampled region is read, so a small region costs no more than the whole frame.
+ */
+public class YuvPreprocessor {
+  private final int mOutWidth;
+  private final int mOutHeight;
+  private final InputEncoder mEncoder;
+
+  // Frame geometry the sampling tables were built for
+  private int mWidth = -1;
+  private int mHeight = -1;
+  private int mRotation = -1;
+  private int mYRowStride = -1;
+  private int mUvRowStride = -1;
+  private int mUvPixelStride = -1;
+  // Requested region, normalized to the upright frame; only meaningful when mHasRegion is set
+  private final RectF mRequestedRegion = new RectF();
+  private boolean mHasRegion;
+  // Region actually sampled after fitting the output aspect ratio, normalized to the upright frame
+  private final RectF mRegion = new RectF(0f, 0f, 1f, 1f);
+
+  // Per output column / row offsets into the Y and chroma planes; a pixel's offset is colX[x] + rowX[y].
+  // Allocated with the first frame, so a model that never sees one does not pay for them
+  private int[] mColY;
+  private int[] mColUv;
+  private int[] mRowY;
+  private int[] mRowUv;
+
+  public YuvPreprocessor(InputEncoder encoder) {
+    mOutWidth = encoder.getSpec().getWidth();
+    mOutHeight = encoder.getSpec().getHeight();
+    mEncoder = encoder;
+  }
+
+  /**
+   * Fills {@code out} from a camera frame; {@code rotation} is the clockwise rotation that makes it upright.
+   *
+   * @param region the part of the upright frame to sample, normalized to its size, or {@code null} for all of it.
+   * @return {@code false} if the region is empty or the output buffer is too small.
+   */
+  public boolean process(YuvFrame frame, int rotation, RectF region, ByteBuffer out) {
+    if (region != null && region.isEmpty()) {
+      // Nothing to sample; falling back to the whole frame would silently ignore the region
+      return false;
+    }
+    if (region == null ? mHasRegion : !mHasRegion || !region.equals(mRequestedRegion)) {
+      mHasRegion = region != null;
+      if (region != null) {
+        mRequestedRegion.set(region);
+      }
+      // Forces the tables to be rebuilt
+      mWidth = -1;
+    }
+    return processYuv420(frame.getYPlane(), frame.getUPlane(), frame.getVPlane(), frame.getWidth(), frame.getHeight(),
+        frame.getYRowStride(), frame.getUvRowStride(), frame.getUvPixelStride(), rotation, out);
+  }
+
+  /**
+   * @return the part of the upright frame the last output was sampled from, normalized to its size.
+   */
+  public RectF getRegion() {
+    return mRegion;
+  }
+
+  /**
+   * Fills {@code out} from the planes of a {@code YUV_420_888} image; {@code rotation} may be any multiple of 90,
+   * negative ones included.
+   *
+   * @return {@code false} if the output buffer is too small.
+   */
+  @VisibleForTesting
+  boolean processYuv420(
+      ByteBuffer yPlane,
+      ByteBuffer uPlane,
+      ByteBuffer vPlane,
+      int width,
+      int height,
+      int yRowStride,
+      int uvRowStride,
+      int uvPixelStride,
+      int rotation,
+      ByteBuffer out) {
+    // Callers hand over rotations such as -90; the sampling tables only know 0, 90, 180 and 270
+    final int uprightRotation = ((rotation % 360) + 360) % 360;
+    return process(yPlane, 0, uPlane, 0, vPlane, 0,
+        width, height, yRowStride, uvRowStride, uvPixelStride, uprightRotation, out);
+  }
+
+  private boolean process(
+      ByteBuffer yPlane, int yOffset,
+      ByteBuffer uPlane, int uOffset,
+      ByteBuffer vPlane, int vOffset,
+      int width, int height,
+      int yRowStride, int uvRowStride, int uvPixelStride,
+      int rotation,
+      ByteBuffer out) {
+    if (out.capacity() < mEncoder.getSpec().getByteSize()) {
+      return false;
+    }
+    if (width != mWidth || height != mHeight || rotation != mRotation
+        || yRowStride != mYRowStride || uvRowStride != mUvRowStride || uvPixelStride != mUvPixelStride) {
+      buildTables(width, height, rotation, yRowStride, uvRowStride, uvPixelStride);
+    }
+
+    int pixel = 0;
+    for (int oy = 0; oy < mOutHeight; ++oy) {
+      final int rowY = yOffset + mRowY[oy];
+      final int rowUv = mRowUv[oy];
+      for (int ox = 0; ox < mOutWidth; ++ox) {
+        final int y = yPlane.get(rowY + mColY[ox]) & 0xFF;
+        final int uv = rowUv + mColUv[ox];
+        final int u = (uPlane.get(uOffset + uv) & 0xFF) - 128;
+        final int v = (vPlane.get(vOffset + uv) & 0xFF) - 128;
+
+        // BT.601 full range, 16.16 fixed point
+        final int r = clamp(y + ((91881 * v) >> 16));
+        final int g = clamp(y - ((22554 * u + 46802 * v) >> 16));
+        final int b = clamp(y + ((116130 * u) >> 16));
+
+        mEncoder.put(out, pixel++, r, g, b);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Maps every output pixel to a source pixel. Output coordinates live in the upright image, whose requested
+   * region is center-cropped to the output aspect ratio; {@code rotation} is the clockwise rotation that makes
+   * the sensor image upright.
+   */
+  private void buildTables(int width, int height, int rotation, int yRowStride, int uvRowStride, int uvPixelStride) {
+    mWidth = width;
+    mHeight = height;
+    mRotation = rotation;
+    mYRowStride = yRowStride;
+    mUvRowStride = uvRowStride;
+    mUvPixelStride = uvPixelStride;
+    if (mColY == null) {
+      mColY = new int[mOutWidth];
+      mColUv = new int[mOutWidth];
+      mRowY = new int[mOutHeight];
+      mRowUv = new int[mOutHeight];
+    }
+
+    final boolean transposed = rotation % 180 != 0;
+    final int uprightWidth = transposed ? height : width;
+    final int uprightHeight = transposed ? width : height;
+
+    int regionX = 0;
+    int regionY = 0;
+    int regionWidth = uprightWidth;
+    int regionHeight = uprightHeight;
+    if (mHasRegion) {
+      regionX = (int) (mRequestedRegion.left * uprightWidth);
+      regionY = (int) (mRequestedRegion.top * uprightHeight);
+      regionWidth = Math.max(1, Math.min(uprightWidth - regionX, (int) (mRequestedRegion.width() * uprightWidth)));
+      regionHeight = Math.max(1, Math.min(uprightHeight - regionY, (int) (mRequestedRegion.height() * uprightHeight)));
+    }
+
+    int cropWidth = regionWidth;
+    int cropHeight = regionHeight;
+    if ((long) regionWidth * mOutHeight > (long) regionHeight * mOutWidth) {
+      cropWidth = Math.max(1, (int) ((long) regionHeight * mOutWidth / mOutHeight));
+    } else {
+      cropHeight = Math.max(1, (int) ((long) regionWidth * mOutHeight / mOutWidth));
+    }
+    final int cropX = regionX + (regionWidth - cropWidth) / 2;
+    final int cropY = regionY + (regionHeight - cropHeight) / 2;
+    mRegion.set((float) cropX / uprightWidth, (float) cropY / uprightHeight,
+        (float) (cropX + cropWidth) / uprightWidth, (float) (cropY + cropHeight) / uprightHeight);
+
+    for (int ox = 0; ox < mOutWidth; ++ox) {
+      int ux = cropX + (int) ((ox + 0.5f) * cropWidth / mOutWidth);
+      int sx = 0;
+      int sy = 0;
+      switch (rotation) {
+        case 90:
+          sy = height - 1 - ux;
+          break;
+        case 180:
+          sx = width - 1 - ux;
+          break;
+        case 270:
+          sy = ux;
+          break;
+        default:
+          sx = ux;
+      }
+      mColY[ox] = sy * yRowStride + sx;
+      mColUv[ox] = (sy >> 1) * uvRowStride + (sx >> 1) * uvPixelStride;
+    }
+    for (int oy = 0; oy < mOutHeight; ++oy) {
+      int uy = cropY + (int) ((oy + 0.5f) * cropHeight / mOutHeight);
+      int sx = 0;
+      int sy = 0;
+      switch (rotation) {
+        case 90:
+          sx = uy;
+          break;
+        case 180:
+          sy = height - 1 - uy;
+          break;
+        case 270:
+          sx = width - 1 - uy;
+          break;
+        default:
+          sy = uy;
+      }
+      mRowY[oy] = sy * yRowStride + sx;
+      mRowUv[oy] = (sy >> 1) * uvRowStride + (sx >> 1) * uvPixelStride;
+    }
+  }
+
+  private static int clamp(int value) {
+    return value < 0 ? 0 : (value > 255 ? 255 : value);
+  }
+}
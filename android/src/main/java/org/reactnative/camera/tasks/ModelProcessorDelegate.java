@@ -0,0 +1,13 @@
+package org.reactnative.camera.tasks;
+
+import org.reactnative.camera.model.ModelResult;
+import org.reactnative.camera.utils.ImageDimensions;
+
+public interface ModelProcessorDelegate {
+    /**
+     * @param results the results of each pipeline model, {@code null} for models not due on this frame.
+     * @param files the model file of each pipeline model.
+     * @param dimensions the frame the results were computed from.
+     */
+    void onModelProcessed(ModelResult[] results, String[] files, ImageDimensions dimensions);
+}
@@ -0,0 +1,345 @@
+package org.reactnative.camera.tasks;
+
+import android.util.Log;
+import com.facebook.react.bridge.Arguments;
+import com.google.android.cameraview.YuvFrame;
+
+import org.reactnative.camera.model.FrameThrottle;
+import org.reactnative.camera.model.ModelPipeline;
+import org.reactnative.camera.model.ModelResult;
+import org.reactnative.camera.utils.ImageDimensions;
+import org.reactnative.camera.utils.PreviewLayout;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.facebook.react.bridge.WritableMap;
+
+/**
+ * Long-lived inference thread owned by a camera view.
+ * Frames are handed over through a single-slot mailbox where the newest frame always replaces a pending one,
+ * so inference never runs on a stale frame. The worker owns the model pipeline it runs and closes it once it is
+ * replaced and no frame is using it anymore.
+ */
+public class ModelProcessorWorker implements Runnable {
+    private static final String TAG = "ModelProcessorWorker";
+
+    private final ModelProcessorDelegate mDelegate;
+    private final Object mLock = new Object();
+    // The one worker thread, created on the first start; guarded by mLock
+    private Thread mThread;
+    // Whether frames are accepted, guarded by mLock
+    private boolean mRunning;
+    // Set once the worker is shut down for good, guarded by mLock
+    private boolean mQuit;
+
+    private final AtomicLong mReceivedFrames = new AtomicLong();
+    private final AtomicLong mDroppedFrames = new AtomicLong();
+    private final AtomicLong mOverwrittenFrames = new AtomicLong();
+    private final AtomicLong mProcessedFrames = new AtomicLong();
+    private final AtomicLong mSkippedFrames = new AtomicLong();
+    private final AtomicLong mUnchangedFrames = new AtomicLong();
+    private final AtomicLong mFailedFrames = new AtomicLong();
+
+    private volatile FrameThrottle mThrottle;
+    private volatile PreviewLayout mPreviewLayout;
+    private final ModelStats mStats = new ModelStats();
+
+    // Latest-frame-wins mailbox, guarded by mLock
+    private boolean mHasFrame;
+    private YuvFrame mFrame;
+    private int mFrameRotation;
+    private int mFrameFacing;
+    private long mFrameArrivalNs;
+
+    // Pipeline state, guarded by mLock
+    private ModelPipeline mPipeline;
+    // Pipeline used by the frame in flight, if any
+    private ModelPipeline mBusyPipeline;
+    // Replaced pipeline to close once the frame in flight is done with it
+    private ModelPipeline mRetiredPipeline;
+
+    public ModelProcessorWorker(ModelProcessorDelegate delegate) {
+        mDelegate = delegate;
+    }
+
+    /**
+     * Replaces the pipeline used for the next frames, or removes it with {@code null}. A frame already being
+     * processed finishes on the previous pipeline, which is closed as soon as nothing uses it.
+     */
+    public void setPipeline(ModelPipeline pipeline) {
+        ModelPipeline toClose = null;
+        synchronized (mLock) {
+            ModelPipeline previous = mPipeline;
+            mPipeline = pipeline;
+            if (pipeline != null && pipeline == mRetiredPipeline) {
+                mRetiredPipeline = null;
+            }
+            if (previous == null || previous == pipeline) {
+                return;
+            }
+            if (previous == mBusyPipeline) {
+                if (mRetiredPipeline != null && mRetiredPipeline != mBusyPipeline) {
+                    toClose = mRetiredPipeline;
+                }
+                mRetiredPipeline = previous;
+            } else {
+                toClose = previous;
+            }
+        }
+        if (toClose != null) {
+            toClose.close();
+        }
+    }
+
+    /**
+     * Starts accepting frames. The worker keeps a single thread for its whole life, so pausing and resuming never
+     * lets two threads run the same interpreters.
+     */
+    public void start() {
+        synchronized (mLock) {
+            if (mQuit) {
+                return;
+            }
+            mRunning = true;
+            if (mThread == null) {
+                mThread = new Thread(this, "RNCamera-Model-Worker");
+                mThread.start();
+            }
+        }
+    }
+
+    /**
+     * Stops accepting frames and drops the pending one. The frame currently being processed, if any, is allowed
+     * to finish.
+     */
+    public void stop() {
+        synchronized (mLock) {
+            mRunning = false;
+            dropPendingFrameLocked();
+        }
+    }
+
+    /**
+     * Stops accepting frames for good and lets the thread exit once the frame in flight, if any, is done.
+     */
+    public void quit() {
+        synchronized (mLock) {
+            mRunning = false;
+            mQuit = true;
+            dropPendingFrameLocked();
+            mLock.notifyAll();
+        }
+    }
+
+    private void dropPendingFrameLocked() {
+        if (mHasFrame) {
+            mDroppedFrames.incrementAndGet();
+            mFrame.release();
+        }
+        mHasFrame = false;
+        mFrame = null;
+    }
+
+    /**
+     * Puts a frame in the mailbox, replacing the pending one if the worker has not picked it up yet.
+     * The mailbox retains the frame and releases it once it has been processed or replaced.
+     *
+     * @param facing the camera the frame comes from.
+     * @param arrivalNs {@link System#nanoTime()} when the camera delivered the frame.
+     * @return {@code false} if the frame was dropped because the worker is stopped.
+     */
+    public boolean offer(YuvFrame frame, int rotation, int facing, long arrivalNs) {
+        mReceivedFrames.incrementAndGet();
+        synchronized (mLock) {
+            if (!mRunning) {
+                mDroppedFrames.incrementAndGet();
+                return false;
+            }
+            if (mHasFrame) {
+                mOverwrittenFrames.incrementAndGet();
+                // Hand the stale frame back to the camera right away
+                mFrame.release();
+            }
+            frame.retain();
+            mFrame = frame;
+            mFrameRotation = rotation;
+            mFrameFacing = facing;
+            mFrameArrivalNs = arrivalNs;
+            mHasFrame = true;
+            mLock.notifyAll();
+            return true;
+        }
+    }
+
+    /**
+     * Accounts for a frame the throttle skipped before it reached the mailbox.
+     */
+    public void skip() {
+        mReceivedFrames.incrementAndGet();
+        mSkippedFrames.incrementAndGet();
+    }
+
+    /**
+     * Sets the throttle that receives the processing time of every frame, or {@code null}.
+     */
+    public void setThrottle(FrameThrottle throttle) {
+        mThrottle = throttle;
+    }
+
+    /**
+     * Sets where the preview sits in the view, used to map results into view coordinates.
+     */
+    public void setPreviewLayout(PreviewLayout layout) {
+        mPreviewLayout = layout;
+    }
+
+    public ModelStats getStats() {
+        return mStats;
+    }
+
+    public WritableMap getFrameStats() {
+        WritableMap stats = Arguments.createMap();
+        stats.putDouble("received", mReceivedFrames.get());
+        stats.putDouble("processed", mProcessedFrames.get());
+        stats.putDouble("overwritten", mOverwrittenFrames.get());
+        stats.putDouble("dropped", mDroppedFrames.get());
+        stats.putDouble("skipped", mSkippedFrames.get());
+        stats.putDouble("unchanged", mUnchangedFrames.get());
+        stats.putDouble("failed", mFailedFrames.get());
+        return stats;
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            YuvFrame frame;
+            int rotation;
+            int facing;
+            long arrivalNs;
+            ModelPipeline pipeline;
+            synchronized (mLock) {
+                while (!mQuit && !mHasFrame) {
+                    try {
+                        mLock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (mQuit) {
+                    return;
+                }
+                frame = mFrame;
+                rotation = mFrameRotation;
+                facing = mFrameFacing;
+                arrivalNs = mFrameArrivalNs;
+                mFrame = null;
+                mHasFrame = false;
+                pipeline = mPipeline;
+                mBusyPipeline = pipeline;
+            }
+            try {
+                processFrame(pipeline, frame, rotation, facing, arrivalNs);
+            } catch (RuntimeException e) {
+                // A bad frame must not take the thread down with it
+                Log.e(TAG, "Failed to process frame", e);
+                mFailedFrames.incrementAndGet();
+            } finally {
+                ModelPipeline toClose = null;
+                synchronized (mLock) {
+                    mBusyPipeline = null;
+                    if (mRetiredPipeline != null) {
+                        toClose = mRetiredPipeline;
+                        mRetiredPipeline = null;
+                    }
+                }
+                if (toClose != null) {
+                    toClose.close();
+                }
+            }
+        }
+    }
+
+    private void processFrame(ModelPipeline pipeline, YuvFrame frame, int rotation, int facing, long arrivalNs) {
+        final long startNs = System.nanoTime();
+        mStats.queue.record(startNs - arrivalNs);
+        // Read before the frame goes back to the camera
+        final int width = frame.getWidth();
+        final int height = frame.getHeight();
+        final PreviewLayout layout = mPreviewLayout;
+        final long frameIndex;
+        boolean prepared;
+        try {
+            if (pipeline == null) {
+                mDroppedFrames.incrementAndGet();
+                return;
+            }
+            frameIndex = pipeline.nextFrame();
+            if (!pipeline.hasDueModels(frameIndex)) {
+                mSkippedFrames.incrementAndGet();
+                return;
+            }
+            prepared = pipeline.prepare(frame, rotation, facing, layout, frameIndex);
+        } finally {
+            // The input tensors hold their own copy from here on
+            frame.release();
+        }
+        if (!prepared) {
+            mDroppedFrames.incrementAndGet();
+            return;
+        }
+        final long preparedNs = System.nanoTime();
+        mStats.preprocess.record(preparedNs - startNs);
+        long inferenceNs = 0;
+        long postprocessNs = 0;
+        // Only allocated once a model has results to emit
+        ModelResult[] results = null;
+        boolean ran = false;
+        for (int i = 0; i < pipeline.size(); ++i) {
+            if (!pipeline.isDue(i, frameIndex) || !pipeline.hasInput(i)) {
+                // Not due, or its region of interest is outside the visible preview
+                continue;
+            }
+            ran = true;
+            final long runStartNs = System.nanoTime();
+            try {
+                pipeline.run(i);
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to run model " + pipeline.getFiles()[i], e);
+                mFailedFrames.incrementAndGet();
+                return;
+            }
+            final long inferredNs = System.nanoTime();
+            ModelResult result = pipeline.postProcess(i, facing, layout);
+            if (result != null) {
+                if (results == null) {
+                    results = new ModelResult[pipeline.size()];
+                }
+                results[i] = result;
+            }
+            inferenceNs += inferredNs - runStartNs;
+            postprocessNs += System.nanoTime() - inferredNs;
+        }
+        if (!ran) {
+            mSkippedFrames.incrementAndGet();
+            return;
+        }
+        mStats.inference.record(inferenceNs);
+        mStats.postprocess.record(postprocessNs);
+        final long processedNs = System.nanoTime();
+        mProcessedFrames.incrementAndGet();
+        FrameThrottle throttle = mThrottle;
+        if (throttle != null) {
+            throttle.onFrameProcessed(processedNs - startNs);
+        }
+        if (results == null) {
+            // Every model matched its last emitted results
+            mUnchangedFrames.incrementAndGet();
+            mStats.total.record(processedNs - arrivalNs);
+            return;
+        }
+        mDelegate.onModelProcessed(results, pipeline.getFiles(), new ImageDimensions(width, height, rotation, facing));
+        final long dispatchedNs = System.nanoTime();
+        mStats.dispatch.record(dispatchedNs - processedNs);
+        mStats.total.record(dispatchedNs - arrivalNs);
+    }
+}
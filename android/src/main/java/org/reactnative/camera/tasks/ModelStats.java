@@ -0,0 +1,35 @@
+package org.reactnative.camera.tasks;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import org.reactnative.camera.utils.LatencyHistogram;
+
+/**
+ * Rolling latency of every stage a frame goes through on its way to an {@code onModelProcessed} event.
+ */
+public class ModelStats {
+    private static final long WINDOW_MS = 10000;
+
+    // Frame handed to the worker until the worker picks it up
+    public final LatencyHistogram queue = new LatencyHistogram(WINDOW_MS);
+    // YUV frame to input tensor
+    public final LatencyHistogram preprocess = new LatencyHistogram(WINDOW_MS);
+    public final LatencyHistogram inference = new LatencyHistogram(WINDOW_MS);
+    public final LatencyHistogram postprocess = new LatencyHistogram(WINDOW_MS);
+    // Building and dispatching the JS event
+    public final LatencyHistogram dispatch = new LatencyHistogram(WINDOW_MS);
+    // Frame arrival until the event is dispatched
+    public final LatencyHistogram total = new LatencyHistogram(WINDOW_MS);
+
+    public WritableMap toWritableMap() {
+        WritableMap stages = Arguments.createMap();
+        stages.putMap("queue", queue.toWritableMap());
+        stages.putMap("preprocess", preprocess.toWritableMap());
+        stages.putMap("inference", inference.toWritableMap());
+        stages.putMap("postprocess", postprocess.toWritableMap());
+        stages.putMap("dispatch", dispatch.toWritableMap());
+        stages.putMap("total", total.toWritableMap());
+        return stages;
+    }
+}
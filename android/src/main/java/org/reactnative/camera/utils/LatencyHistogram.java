@@ -0,0 +1,134 @@
+package org.reactnative.camera.utils;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram over a rolling window.
+ * Durations are bucketed in microseconds with four sub-buckets per power of two (about 19% resolution).
+ * Samples go into the current of two windows; when it is older than the window length the older window is
+ * cleared and becomes current, so percentiles cover between one and two window lengths of history.
+ */
+public class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 2;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int MAX_MAGNITUDE = 40;
+  private static final int BUCKET_COUNT = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+  private final long mWindowNs;
+  private final AtomicLongArray[] mWindows = {
+      new AtomicLongArray(BUCKET_COUNT),
+      new AtomicLongArray(BUCKET_COUNT)
+  };
+  private final AtomicLong mWindowStartNs = new AtomicLong(System.nanoTime());
+  private volatile int mCurrent;
+
+  public LatencyHistogram(long windowMs) {
+    mWindowNs = windowMs * 1000000L;
+  }
+
+  public void record(long durationNs) {
+    long nowNs = System.nanoTime();
+    long startNs = mWindowStartNs.get();
+    if (nowNs - startNs >= mWindowNs && mWindowStartNs.compareAndSet(startNs, nowNs)) {
+      int next = 1 - mCurrent;
+      AtomicLongArray window = mWindows[next];
+      for (int i = 0; i < BUCKET_COUNT; ++i) {
+        window.set(i, 0);
+      }
+      mCurrent = next;
+    }
+    mWindows[mCurrent].incrementAndGet(bucketOf(Math.max(0, durationNs / 1000)));
+  }
+
+  /**
+   * @return count, p50, p95, p99 and max of the window, in milliseconds.
+   */
+  public WritableMap toWritableMap() {
+    long[] counts = new long[BUCKET_COUNT];
+    long total = snapshot(counts);
+    int highest = BUCKET_COUNT - 1;
+    while (highest >= 0 && counts[highest] == 0) {
+      highest--;
+    }
+    WritableMap map = Arguments.createMap();
+    map.putDouble("count", total);
+    map.putDouble("p50", percentile(counts, total, 0.50));
+    map.putDouble("p95", percentile(counts, total, 0.95));
+    map.putDouble("p99", percentile(counts, total, 0.99));
+    map.putDouble("max", highest < 0 ? 0 : upperBoundOf(highest) / 1000.0);
+    return map;
+  }
+
+  /**
+   * @return the {@code quantile} of the window in milliseconds, 0 when it is empty.
+   */
+  @VisibleForTesting
+  double getPercentile(double quantile) {
+    long[] counts = new long[BUCKET_COUNT];
+    return percentile(counts, snapshot(counts), quantile);
+  }
+
+  /**
+   * Adds up both windows into {@code counts}.
+   *
+   * @return the number of samples.
+   */
+  private long snapshot(long[] counts) {
+    long total = 0;
+    for (AtomicLongArray window : mWindows) {
+      for (int i = 0; i < BUCKET_COUNT; ++i) {
+        long count = window.get(i);
+        counts[i] += count;
+        total += count;
+      }
+    }
+    return total;
+  }
+
+  private static double percentile(long[] counts, long total, double quantile) {
+    if (total == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(quantile * total);
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; ++i) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return (lowerBoundOf(i) + upperBoundOf(i)) / 2.0 / 1000.0;
+      }
+    }
+    return upperBoundOf(BUCKET_COUNT - 1) / 1000.0;
+  }
+
+  private static int bucketOf(long micros) {
+    if (micros < SUB_BUCKETS) {
+      return (int) micros;
+    }
+    int magnitude = Math.min(MAX_MAGNITUDE, 63 - Long.numberOfLeadingZeros(micros));
+    int sub = (int) (micros >> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+  }
+
+  private static long lowerBoundOf(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int magnitude = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    int sub = bucket % SUB_BUCKETS;
+    return (long) (SUB_BUCKETS + sub) << (magnitude - SUB_BUCKET_BITS);
+  }
+
+  private static long upperBoundOf(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int magnitude = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    return lowerBoundOf(bucket) + (1L << (magnitude - SUB_BUCKET_BITS)) - 1;
+  }
+}
@@ -0,0 +1,72 @@
+package org.reactnative.camera.utils;
+
+import android.graphics.RectF;
+
+/**
+ * Where the camera preview sits inside the camera view. The preview shows the whole upright frame scaled to
+ * the preview rectangle, which is centered in the view and may overflow it by the padding computed in
+ * {@code RNCameraView.onLayout}. Used to map frame coordinates to view coordinates in dp and back.
+ */
+public class PreviewLayout {
+  private final int mViewWidth;
+  private final int mViewHeight;
+  private final int mLeft;
+  private final int mTop;
+  private final int mWidth;
+  private final int mHeight;
+  private final float mDensity;
+
+  public PreviewLayout(int viewWidth, int viewHeight, int left, int top, int width, int height, float density) {
+    mViewWidth = viewWidth;
+    mViewHeight = viewHeight;
+    mLeft = left;
+    mTop = top;
+    mWidth = width;
+    mHeight = height;
+    mDensity = density;
+  }
+
+  /**
+   * @param x position across the upright frame, 0 at the left edge and 1 at the right edge.
+   * @param mirrored whether the preview is mirrored, as it is for the front camera.
+   * @return the view x coordinate in dp.
+   */
+  public double toViewX(double x, boolean mirrored) {
+    return (mLeft + (mirrored ? 1 - x : x) * mWidth) / mDensity;
+  }
+
+  /**
+   * @param y position down the upright frame, 0 at the top edge and 1 at the bottom edge.
+   * @return the view y coordinate in dp.
+   */
+  public double toViewY(double y) {
+    return (mTop + y * mHeight) / mDensity;
+  }
+
+  /**
+   * Maps a rectangle normalized to the view size onto the upright frame, clipped to the frame. The result is
+   * empty when the rectangle lies outside the visible preview.
+   *
+   * @param mirrored whether the preview is mirrored, as it is for the front camera.
+   * @return the rectangle normalized to the upright frame, written into {@code out}.
+   */
+  public RectF toFrameRect(RectF viewRect, boolean mirrored, RectF out) {
+    float left = (viewRect.left * mViewWidth - mLeft) / mWidth;
+    float right = (viewRect.right * mViewWidth - mLeft) / mWidth;
+    if (mirrored) {
+      float mirroredLeft = 1 - right;
+      right = 1 - left;
+      left = mirroredLeft;
+    }
+    out.set(
+        clamp(left),
+        clamp((viewRect.top * mViewHeight - mTop) / mHeight),
+        clamp(right),
+        clamp((viewRect.bottom * mViewHeight - mTop) / mHeight));
+    return out;
+  }
+
+  private static float clamp(float value) {
+    return value < 0f ? 0f : (value > 1f ? 1f : value);
+  }
+}
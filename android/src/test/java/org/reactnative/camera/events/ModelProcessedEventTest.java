@@ -0,0 +1,60 @@
+package org.reactnative.camera.events;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.reactnative.camera.model.ModelResult;
+import org.reactnative.camera.utils.ImageDimensions;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+@RunWith(RobolectricTestRunner.class)
+public class ModelProcessedEventTest {
+  private static final int VIEW_TAG = 1;
+  private static final String[] FILES = {"classifier.tflite", "detector.tflite"};
+
+  @Test
+  public void keepsResultsOfModelsMissingFromNewerEvent() {
+    ModelResult classifier = result();
+    ModelResult detector = result();
+    ModelResult newerClassifier = result();
+    ModelProcessedEvent older = event(FILES, classifier, detector);
+    ModelProcessedEvent newer = event(FILES, newerClassifier, null);
+
+    ModelProcessedEvent coalesced = newer.coalesce(older);
+    assertSame(newer, coalesced);
+    assertSame(newerClassifier, coalesced.getResults()[0]);
+    assertSame(detector, coalesced.getResults()[1]);
+  }
+
+  @Test
+  public void prefersNewerResults() {
+    ModelResult newerClassifier = result();
+    ModelResult newerDetector = result();
+    ModelProcessedEvent older = event(FILES, result(), result());
+    ModelProcessedEvent newer = event(FILES, newerClassifier, newerDetector);
+
+    ModelProcessedEvent coalesced = newer.coalesce(older);
+    assertSame(newerClassifier, coalesced.getResults()[0]);
+    assertSame(newerDetector, coalesced.getResults()[1]);
+  }
+
+  @Test
+  public void dropsResultsOfReplacedModels() {
+    ModelProcessedEvent older = event(new String[]{"old.tflite", "detector.tflite"}, result(), result());
+    ModelProcessedEvent newer = event(FILES, result(), null);
+
+    ModelProcessedEvent coalesced = newer.coalesce(older);
+    assertSame(newer, coalesced);
+    assertNull(coalesced.getResults()[1]);
+  }
+
+  private static ModelProcessedEvent event(String[] files, ModelResult... results) {
+    return ModelProcessedEvent.obtain(VIEW_TAG, results, files, new ImageDimensions(640, 480), 1, 1, null);
+  }
+
+  private static ModelResult result() {
+    return ModelResult.ofPacked(0, 1, new int[0], new float[0]);
+  }
+}
@@ -0,0 +1,140 @@
+package org.reactnative.camera.model;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.tensorflow.lite.DataType;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+public class ClassificationPostProcessorTest {
+  private static final float EPSILON = 1e-4f;
+
+  private ClassificationPostProcessor mPostProcessor;
+  private float[][] mOutput;
+  private final int[] mClasses = new int[8];
+  private final float[] mValues = new float[8];
+
+  @Test
+  public void selectsTopKInOrder() {
+    create(JavaOnlyMap.of("numResults", 3, "threshold", 0.0, "softmax", false), 8);
+    assertEquals(3, run(0.2f, 0.05f, 0.9f, 0.1f, 0.7f, 0.3f, 0.0f, 0.8f));
+    assertResult(0, 2, 0.9f);
+    assertResult(1, 7, 0.8f);
+    assertResult(2, 4, 0.7f);
+
+    // The heap is reused, so a second output must not see the first one
+    assertEquals(3, run(0.6f, 0.5f, 0.0f, 0.0f, 0.0f, 0.0f, 0.4f, 0.0f));
+    assertResult(0, 0, 0.6f);
+    assertResult(1, 1, 0.5f);
+    assertResult(2, 6, 0.4f);
+  }
+
+  @Test
+  public void cutsResultsAtThreshold() {
+    create(JavaOnlyMap.of("numResults", 4, "threshold", 0.5, "softmax", false), 4);
+    assertEquals(2, run(0.4f, 0.5f, 0.1f, 0.9f));
+    assertResult(0, 3, 0.9f);
+    assertResult(1, 1, 0.5f);
+  }
+
+  @Test
+  public void softmaxSumsToOne() {
+    create(JavaOnlyMap.of("numResults", 5, "threshold", 0.0, "softmax", true), 5);
+    float[] logits = {2f, -1f, 0.5f, 3f, 30f};
+    assertEquals(5, run(logits));
+    float sum = 0f;
+    for (int i = 0; i < 5; ++i) {
+      sum += mValues[i];
+    }
+    assertEquals(1f, sum, EPSILON);
+    // Large logits must not overflow, and the order follows the logits
+    assertEquals(4, mClasses[0]);
+    assertEquals(3, mClasses[1]);
+    assertEquals((float) (Math.exp(3 - 30) / (Math.exp(2 - 30) + Math.exp(-1 - 30) + Math.exp(0.5 - 30)
+        + Math.exp(3 - 30) + 1)), mValues[1], 1e-9f);
+  }
+
+  @Test
+  public void dequantizesUint8() {
+    mPostProcessor = new ClassificationPostProcessor(new int[]{1, 3}, DataType.UINT8, 0.5f, 10,
+        ModelOptions.fromReadableMap(JavaOnlyMap.of("numResults", 3, "threshold", 0.0)));
+    Map<Integer, Object> outputs = new HashMap<>();
+    mPostProcessor.bindOutputs(outputs);
+    byte[][] output = (byte[][]) outputs.get(0);
+    output[0][0] = (byte) 20;
+    output[0][1] = (byte) 250;
+    output[0][2] = (byte) 10;
+    mPostProcessor.select();
+    // Quantized outputs default to no softmax
+    assertEquals(3, mPostProcessor.pack(false, null, null, mClasses, mValues));
+    assertResult(0, 1, 120f);
+    assertResult(1, 0, 5f);
+    assertResult(2, 2, 0f);
+  }
+
+  @Test
+  public void mergesTilesKeepingBestScorePerClass() {
+    create(JavaOnlyMap.of("numResults", 3, "threshold", 0.0, "softmax", false, "tiles", JavaOnlyMap.of("rows", 2)), 8);
+    int[] counts = {3, 2};
+    int[][] classes = {{4, 1, 6}, {1, 2, 0}};
+    float[][] values = {{0.5f, 0.3f, 0.2f}, {0.8f, 0.25f, 0f}};
+    assertEquals(3, mPostProcessor.merge(2, counts, classes, values, mClasses, mValues));
+    assertResult(0, 1, 0.8f);
+    assertResult(1, 4, 0.5f);
+    assertResult(2, 2, 0.25f);
+  }
+
+  @Test
+  public void holdsTopLabelWithinHysteresis() {
+    // Smoothing factor 2 / (2 + 1)
+    smoothed(0.35f, 0.5f);
+    assertEquals(1, run(0.6f, 0.3f, 0.1f));
+    assertResult(0, 0, 0.6f);
+
+    // Label 1 now leads with 0.5 against 0.4, but not by the 0.5 margin
+    assertEquals(2, run(0.3f, 0.6f, 0.1f));
+    assertResult(0, 0, 0.4f);
+    assertResult(1, 1, 0.5f);
+  }
+
+  @Test
+  public void dropsHeldLabelBelowThreshold() {
+    smoothed(0.35f, 0.5f);
+    assertEquals(1, run(0.6f, 0.3f, 0.1f));
+
+    // Label 0 falls to 0.2333, under the threshold, while label 1 at 0.7 is still inside the margin
+    assertEquals(1, run(0.05f, 0.9f, 0.05f));
+    assertResult(0, 1, 0.7f);
+  }
+
+  private void smoothed(float threshold, float hysteresis) {
+    create(JavaOnlyMap.of("numResults", 3, "threshold", (double) threshold, "softmax", false,
+        "smoothingWindow", 2, "hysteresis", (double) hysteresis), 3);
+  }
+
+  private void create(JavaOnlyMap options, int numClasses) {
+    mPostProcessor = new ClassificationPostProcessor(new int[]{1, numClasses}, DataType.FLOAT32, 0f, 0,
+        ModelOptions.fromReadableMap(options));
+    Map<Integer, Object> outputs = new HashMap<>();
+    mPostProcessor.bindOutputs(outputs);
+    mOutput = (float[][]) outputs.get(0);
+  }
+
+  private int run(float... scores) {
+    System.arraycopy(scores, 0, mOutput[0], 0, scores.length);
+    mPostProcessor.select();
+    return mPostProcessor.pack(false, null, null, mClasses, mValues);
+  }
+
+  private void assertResult(int position, int index, float score) {
+    assertEquals(index, mClasses[position]);
+    assertEquals(score, mValues[position], EPSILON);
+  }
+}
@@ -0,0 +1,188 @@
+package org.reactnative.camera.model;
+
+import android.graphics.RectF;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+public class DetectionPostProcessorTest {
+  private static final float EPSILON = 1e-5f;
+  private static final int MAX_DETECTIONS = 10;
+  // Output order of the TFLite SSD post-processing op
+  private static final int[][] SSD_SHAPES = {{1, MAX_DETECTIONS, 4}, {1, MAX_DETECTIONS}, {1, MAX_DETECTIONS}, {1}};
+  private static final RectF FRAME = new RectF(0f, 0f, 1f, 1f);
+
+  private DetectionPostProcessor mPostProcessor;
+  private final Map<Integer, Object> mOutputs = new HashMap<>();
+  private final int[] mClasses = new int[MAX_DETECTIONS];
+  private final float[] mValues = new float[MAX_DETECTIONS * 5];
+
+  @Test
+  public void keepsDetectionsAboveThreshold() {
+    create(JavaOnlyMap.of("threshold", 0.5), SSD_SHAPES);
+    putRow(1, 3f, 7f, 1f);
+    putRow(2, 0.9f, 0.6f, 0.2f);
+    putCount(3, 3);
+    assertEquals(2, run(FRAME));
+    assertEquals(3, mClasses[0]);
+    assertEquals(0.9f, mValues[0], EPSILON);
+    assertEquals(7, mClasses[1]);
+    assertEquals(0.6f, mValues[5], EPSILON);
+  }
+
+  @Test
+  public void mapsBoxesThroughSampledRegion() {
+    create(JavaOnlyMap.of("threshold", 0.5, "labelOffset", 1), SSD_SHAPES);
+    putRow(1, 2f, 4f);
+    putRow(2, 0.8f, 0.7f);
+    putBox(0, 0, 0.1f, 0.2f, 0.5f, 0.6f);
+    // Boxes reaching past the input are clamped to it
+    putBox(0, 1, -0.5f, 0.5f, 0.5f, 1.5f);
+    putCount(3, 2);
+    assertEquals(2, run(new RectF(0.25f, 0f, 0.75f, 1f)));
+    assertEquals(3, mClasses[0]);
+    assertBox(0, 0.25f + 0.2f * 0.5f, 0.1f, 0.4f * 0.5f, 0.4f);
+    assertEquals(5, mClasses[1]);
+    assertBox(1, 0.25f + 0.5f * 0.5f, 0f, 0.5f * 0.5f, 0.5f);
+  }
+
+  @Test
+  public void swapsClassesAndScoresTheOtherWayRound() {
+    create(JavaOnlyMap.of("threshold", 0.5), SSD_SHAPES);
+    // Scores land in output 1 and classes in output 2
+    putRow(1, 0.9f, 0.6f);
+    putRow(2, 3f, 7f);
+    putCount(3, 2);
+    assertEquals(2, run(FRAME));
+    assertEquals(3, mClasses[0]);
+    assertEquals(0.9f, mValues[0], EPSILON);
+    assertEquals(7, mClasses[1]);
+    assertEquals(0.6f, mValues[5], EPSILON);
+
+    // The outputs stay swapped for the next run
+    putRow(1, 0.8f);
+    putRow(2, 2f);
+    putCount(3, 1);
+    assertEquals(1, run(FRAME));
+    assertEquals(2, mClasses[0]);
+    assertEquals(0.8f, mValues[0], EPSILON);
+  }
+
+  @Test
+  public void staysUndecidedWhileClassesAndScoresLookAlike() {
+    create(JavaOnlyMap.of("threshold", 0.5), SSD_SHAPES);
+    // Classes 1 and 0 with scores of exactly 1 could be either way round
+    putRow(1, 1f, 0f);
+    putRow(2, 1f, 1f);
+    putCount(3, 2);
+    assertEquals(2, run(FRAME));
+    assertEquals(1, mClasses[0]);
+    assertEquals(0, mClasses[1]);
+
+    // A fractional score then settles it the other way
+    putRow(1, 0.7f);
+    putRow(2, 5f);
+    putCount(3, 1);
+    assertEquals(1, run(FRAME));
+    assertEquals(5, mClasses[0]);
+    assertEquals(0.7f, mValues[0], EPSILON);
+  }
+
+  @Test
+  public void trustsOutputIndices() {
+    create(JavaOnlyMap.of("threshold", 0.5,
+        "outputIndices", JavaOnlyMap.of("boxes", 3, "classes", 2, "scores", 1, "count", 0)),
+        new int[][]{{1}, {1, MAX_DETECTIONS}, {1, MAX_DETECTIONS}, {1, MAX_DETECTIONS, 4}});
+    putRow(2, 2f, 0f);
+    putRow(1, 0.8f, 0.6f);
+    putBox(3, 0, 0f, 0f, 0.5f, 0.5f);
+    putCount(0, 2);
+    assertEquals(2, run(FRAME));
+    assertEquals(2, mClasses[0]);
+    assertEquals(0.8f, mValues[0], EPSILON);
+    assertBox(0, 0f, 0f, 0.5f, 0.5f);
+    assertEquals(0, mClasses[1]);
+  }
+
+  @Test
+  public void mergesTilesDroppingOverlappingDuplicates() {
+    create(JavaOnlyMap.of("numResults", 5), SSD_SHAPES);
+    int[] counts = {2, 3};
+    int[][] classes = {{1, 2, 0, 0, 0}, {1, 2, 1, 0, 0}};
+    float[][] values = {
+        {0.9f, 0f, 0f, 0.5f, 0.5f, 0.5f, 0.5f, 0.5f, 0.2f, 0.2f},
+        // IoU 0.82 with the best class 1 box, the same box as another class, and IoU 0.11
+        {0.8f, 0.05f, 0f, 0.5f, 0.5f, 0.7f, 0f, 0f, 0.5f, 0.5f, 0.6f, 0.4f, 0f, 0.5f, 0.5f},
+    };
+    assertEquals(4, mPostProcessor.merge(2, counts, classes, values, mClasses, mValues));
+    assertMerged(0, 1, 0.9f, 0f);
+    assertMerged(1, 2, 0.7f, 0f);
+    assertMerged(2, 1, 0.6f, 0.4f);
+    assertMerged(3, 2, 0.5f, 0.5f);
+  }
+
+  @Test
+  public void mergesAtMostMaxResults() {
+    create(JavaOnlyMap.of("numResults", 2), SSD_SHAPES);
+    int[] counts = {2, 2};
+    int[][] classes = {{1, 2}, {3, 4}};
+    float[][] values = {
+        {0.3f, 0f, 0f, 0.1f, 0.1f, 0.4f, 0.2f, 0f, 0.1f, 0.1f},
+        {0.9f, 0.4f, 0f, 0.1f, 0.1f, 0.1f, 0.6f, 0f, 0.1f, 0.1f},
+    };
+    assertEquals(2, mPostProcessor.merge(2, counts, classes, values, mClasses, mValues));
+    assertMerged(0, 3, 0.9f, 0.4f);
+    assertMerged(1, 2, 0.4f, 0.2f);
+  }
+
+  private void assertMerged(int result, int index, float score, float x) {
+    assertEquals(index, mClasses[result]);
+    assertEquals(score, mValues[result * 5], EPSILON);
+    assertEquals(x, mValues[result * 5 + 1], EPSILON);
+  }
+
+  private void create(JavaOnlyMap options, int[][] shapes) {
+    mPostProcessor = new DetectionPostProcessor(shapes, ModelOptions.fromReadableMap(options));
+    mPostProcessor.bindOutputs(mOutputs);
+  }
+
+  /**
+   * Writes {@code values} to the first detections of a {@code [1][N]} output.
+   */
+  private void putRow(int output, float... values) {
+    System.arraycopy(values, 0, ((float[][]) mOutputs.get(output))[0], 0, values.length);
+  }
+
+  private void putBox(int output, int index, float ymin, float xmin, float ymax, float xmax) {
+    float[] box = ((float[][][]) mOutputs.get(output))[0][index];
+    box[0] = ymin;
+    box[1] = xmin;
+    box[2] = ymax;
+    box[3] = xmax;
+  }
+
+  private void putCount(int output, int count) {
+    ((float[]) mOutputs.get(output))[0] = count;
+  }
+
+  private int run(RectF region) {
+    mPostProcessor.select();
+    return mPostProcessor.pack(false, null, region, mClasses, mValues);
+  }
+
+  private void assertBox(int result, float x, float y, float width, float height) {
+    assertEquals(x, mValues[result * 5 + 1], EPSILON);
+    assertEquals(y, mValues[result * 5 + 2], EPSILON);
+    assertEquals(width, mValues[result * 5 + 3], EPSILON);
+    assertEquals(height, mValues[result * 5 + 4], EPSILON);
+  }
+}
@@ -0,0 +1,212 @@
+package org.reactnative.camera.model;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.tensorflow.lite.DataType;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class YuvPreprocessorTest {
+  private static final int WIDTH = 640;
+  private static final int HEIGHT = 480;
+  private static final int FRAMES = 500;
+  private static final int WARMUP_FRAMES = 50;
+  // Slack for the measurement itself; a single allocation per frame would exceed it many times over
+  private static final long ALLOCATION_SLACK_BYTES = 1024;
+  // Small sensor frame whose luma tells every pixel apart; neutral chroma makes R = G = B = Y
+  private static final int SMALL_WIDTH = 4;
+  private static final int SMALL_HEIGHT = 2;
+
+  private YuvPreprocessor mPreprocessor;
+  private ByteBuffer mInput;
+  private ByteBuffer mY;
+  private ByteBuffer mU;
+  private ByteBuffer mV;
+
+  @Before
+  public void setUp() {
+    ModelOptions options = ModelOptions.fromReadableMap(JavaOnlyMap.of("file", "model.tflite", "label", "labels.txt"));
+    InputSpec spec = new InputSpec(224, 224, 3, InputSpec.Layout.NHWC, DataType.FLOAT32);
+    mPreprocessor = new YuvPreprocessor(new InputEncoder(spec, 0f, 0, options));
+    mInput = ByteBuffer.allocateDirect(spec.getByteSize()).order(ByteOrder.nativeOrder());
+    mY = ByteBuffer.allocateDirect(WIDTH * HEIGHT);
+    mU = ByteBuffer.allocateDirect(WIDTH * HEIGHT / 4);
+    mV = ByteBuffer.allocateDirect(WIDTH * HEIGHT / 4);
+  }
+
+  private boolean process(int rotation) {
+    return mPreprocessor.processYuv420(mY, mU, mV, WIDTH, HEIGHT, WIDTH, WIDTH / 2, 1, rotation, mInput);
+  }
+
+  @Test
+  public void steadyFramesDoNotAllocate() {
+    for (int i = 0; i < WARMUP_FRAMES; ++i) {
+      assertTrue(process(90));
+    }
+    long before = allocatedBytes();
+    for (int i = 0; i < FRAMES; ++i) {
+      assertTrue(process(90));
+    }
+    assertNoAllocation(before);
+  }
+
+  @Test
+  public void geometryChangesDoNotAllocate() {
+    for (int i = 0; i < WARMUP_FRAMES; ++i) {
+      assertTrue(process((i % 4) * 90));
+    }
+    long before = allocatedBytes();
+    for (int i = 0; i < FRAMES; ++i) {
+      assertTrue(process((i % 4) * 90));
+    }
+    assertNoAllocation(before);
+  }
+
+  @Test
+  public void rejectsSmallOutput() {
+    ByteBuffer small = ByteBuffer.allocateDirect(16);
+    assertEquals(false, mPreprocessor.processYuv420(mY, mU, mV, WIDTH, HEIGHT, WIDTH, WIDTH / 2, 1, 0, small));
+  }
+
+  @Test
+  public void placesPixelsUpright() {
+    assertUpright(0);
+    assertUpright(90);
+    assertUpright(180);
+    assertUpright(270);
+  }
+
+  @Test
+  public void normalizesNegativeRotation() {
+    assertUpright(-90);
+    assertUpright(-270);
+    assertUpright(450);
+  }
+
+  @Test
+  public void centerCropsToOutputAspectRatio() {
+    // A square output keeps the middle two columns of the 4x2 frame
+    ByteBuffer out = processSmall(2, 2, 0);
+    assertEquals(smallLuma(1, 0), out.get(0) & 0xFF);
+    assertEquals(smallLuma(2, 0), out.get(3) & 0xFF);
+    assertEquals(smallLuma(1, 1), out.get(6) & 0xFF);
+    assertEquals(smallLuma(2, 1), out.get(9) & 0xFF);
+  }
+
+  @Test
+  public void convertsBt601FullRange() {
+    assertRgb(128, 128, 128, 128, 128, 128);
+    // V shifts red up and green down, U shifts blue up and green down
+    assertRgb(128, 128, 178, 128 + 1.402f * 50, 128 - 0.714136f * 50, 128);
+    assertRgb(128, 178, 128, 128, 128 - 0.344136f * 50, 128 + 1.772f * 50);
+    // Out of gamut values saturate instead of wrapping
+    assertRgb(250, 128, 255, 255, 250 - 0.714136f * 127, 250);
+    assertRgb(5, 0, 128, 5, 5 + 0.344136f * 128, 0);
+  }
+
+  /**
+   * @return bytes allocated so far by the calling thread; skips the test where the JVM cannot tell.
+   */
+  private static long allocatedBytes() {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+    assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+    return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  private static void assertNoAllocation(long before) {
+    long allocated = allocatedBytes() - before;
+    assertTrue(allocated + " bytes allocated over " + FRAMES + " frames", allocated < ALLOCATION_SLACK_BYTES);
+  }
+
+  private void assertUpright(int rotation) {
+    boolean transposed = ((rotation % 180) + 180) % 180 != 0;
+    int outWidth = transposed ? SMALL_HEIGHT : SMALL_WIDTH;
+    int outHeight = transposed ? SMALL_WIDTH : SMALL_HEIGHT;
+    ByteBuffer out = processSmall(outWidth, outHeight, rotation);
+    int clockwise = ((rotation % 360) + 360) % 360;
+    for (int y = 0; y < outHeight; ++y) {
+      for (int x = 0; x < outWidth; ++x) {
+        // Source pixel that lands on (x, y) once the frame is turned clockwise
+        int sx;
+        int sy;
+        switch (clockwise) {
+          case 90:
+            sx = y;
+            sy = SMALL_HEIGHT - 1 - x;
+            break;
+          case 180:
+            sx = SMALL_WIDTH - 1 - x;
+            sy = SMALL_HEIGHT - 1 - y;
+            break;
+          case 270:
+            sx = SMALL_WIDTH - 1 - y;
+            sy = x;
+            break;
+          default:
+            sx = x;
+            sy = y;
+        }
+        int pixel = (y * outWidth + x) * 3;
+        String at = "rotation " + rotation + " at (" + x + ", " + y + ")";
+        assertEquals(at, smallLuma(sx, sy), out.get(pixel) & 0xFF);
+        assertEquals(at, smallLuma(sx, sy), out.get(pixel + 2) & 0xFF);
+      }
+    }
+  }
+
+  private static int smallLuma(int x, int y) {
+    return 10 + 10 * (y * SMALL_WIDTH + x);
+  }
+
+  private static ByteBuffer processSmall(int outWidth, int outHeight, int rotation) {
+    ByteBuffer y = ByteBuffer.allocateDirect(SMALL_WIDTH * SMALL_HEIGHT);
+    for (int row = 0; row < SMALL_HEIGHT; ++row) {
+      for (int col = 0; col < SMALL_WIDTH; ++col) {
+        y.put(row * SMALL_WIDTH + col, (byte) smallLuma(col, row));
+      }
+    }
+    ByteBuffer chroma = filled(SMALL_WIDTH * SMALL_HEIGHT / 4, 128);
+    InputSpec spec = new InputSpec(outHeight, outWidth, 3, InputSpec.Layout.NHWC, DataType.UINT8);
+    ByteBuffer out = ByteBuffer.allocateDirect(spec.getByteSize());
+    assertTrue(uint8(spec).processYuv420(y, chroma, chroma.duplicate(), SMALL_WIDTH, SMALL_HEIGHT, SMALL_WIDTH,
+        SMALL_WIDTH / 2, 1, rotation, out));
+    return out;
+  }
+
+  private static void assertRgb(int y, int u, int v, float r, float g, float b) {
+    InputSpec spec = new InputSpec(1, 1, 3, InputSpec.Layout.NHWC, DataType.UINT8);
+    ByteBuffer out = ByteBuffer.allocateDirect(spec.getByteSize());
+    assertTrue(uint8(spec).processYuv420(filled(4, y), filled(1, u), filled(1, v), 2, 2, 2, 1, 1, 0, out));
+    String at = "yuv (" + y + ", " + u + ", " + v + ")";
+    // Fixed point arithmetic truncates, so allow one step either way
+    assertEquals(at, Math.min(255f, Math.max(0f, r)), out.get(0) & 0xFF, 1f);
+    assertEquals(at, Math.min(255f, Math.max(0f, g)), out.get(1) & 0xFF, 1f);
+    assertEquals(at, Math.min(255f, Math.max(0f, b)), out.get(2) & 0xFF, 1f);
+  }
+
+  private static YuvPreprocessor uint8(InputSpec spec) {
+    ModelOptions options = ModelOptions.fromReadableMap(JavaOnlyMap.of("file", "model.tflite", "label", "labels.txt"));
+    return new YuvPreprocessor(new InputEncoder(spec, 0f, 0, options));
+  }
+
+  private static ByteBuffer filled(int size, int value) {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+    for (int i = 0; i < size; ++i) {
+      buffer.put(i, (byte) value);
+    }
+    return buffer;
+  }
+}
@@ -0,0 +1,59 @@
+package org.reactnative.camera.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LatencyHistogramTest {
+  private static final long WINDOW_MS = 60000;
+  // Four sub-buckets per power of two put a bucket's midpoint within an eighth of any value in it
+  private static final double RESOLUTION = 0.125;
+
+  @Test
+  public void emptyWindowReportsZero() {
+    assertEquals(0, new LatencyHistogram(WINDOW_MS).getPercentile(0.5), 0);
+  }
+
+  @Test
+  public void shortDurationsAreExact() {
+    LatencyHistogram histogram = new LatencyHistogram(WINDOW_MS);
+    histogram.record(2000);
+    histogram.record(3000);
+    assertEquals(0.002, histogram.getPercentile(0.5), 1e-9);
+    assertEquals(0.003, histogram.getPercentile(0.99), 1e-9);
+  }
+
+  @Test
+  public void constantDurationsReportThemselves() {
+    LatencyHistogram histogram = new LatencyHistogram(WINDOW_MS);
+    for (int i = 0; i < 100; ++i) {
+      histogram.record(10000000);
+    }
+    assertNear(10, histogram.getPercentile(0.5));
+    assertNear(10, histogram.getPercentile(0.99));
+  }
+
+  @Test
+  public void percentilesFollowRank() {
+    LatencyHistogram histogram = new LatencyHistogram(WINDOW_MS);
+    // 1 to 100 ms, recorded out of order
+    for (int i = 0; i < 100; ++i) {
+      histogram.record((i * 37 % 100 + 1) * 1000000L);
+    }
+    assertNear(50, histogram.getPercentile(0.50));
+    assertNear(95, histogram.getPercentile(0.95));
+    assertNear(99, histogram.getPercentile(0.99));
+    assertNear(100, histogram.getPercentile(1.0));
+  }
+
+  @Test
+  public void negativeDurationsCountAsZero() {
+    LatencyHistogram histogram = new LatencyHistogram(WINDOW_MS);
+    histogram.record(-5000);
+    assertEquals(0, histogram.getPercentile(0.5), 0);
+  }
+
+  private static void assertNear(double expectedMs, double actualMs) {
+    assertEquals(expectedMs, actualMs, expectedMs * RESOLUTION);
+  }
+}
@@ -104,6 +104,39 @@ type Rect = {
   height: number,
 };
 
+type ModelParams = {
+  file: string,
+  label: string,
+  numResults?: number,
+  threshold?: number,
+  softmax?: boolean,
+  numThreads?: number,
+  useXNNPACK?: boolean,
+  allowFp16?: boolean,
+  mean?: number | number[],
+  std?: number | number[],
+  channelOrder?: 'RGB' | 'BGR',
+  inputRange?: [number, number],
+  inputLayout?: 'NHWC' | 'NCHW',
+  analysisSize?: 'preview' | { width: number, height: number },
+  maxFps?: number,
+  minIntervalMs?: number,
+  adaptiveFps?: boolean,
+  warmupRuns?: number,
+  everyNFrames?: number,
+  outputType?: 'classification' | 'detection',
+  labelOffset?: number,
+  outputIndices?: { boxes: number, classes: number, scores: number, count: number },
+  resultFormat?: 'maps' | 'compact',
+  smoothingWindow?: number,
+  hysteresis?: number,
+  emitOnChange?: boolean,
+  changeTolerance?: number,
+  boxChangeTolerance?: number,
+  roi?: Rect,
+  tiles?: { rows?: number, cols?: number, overlap?: number, batch?: boolean },
+};
+
 type PropsType = typeof View.props & {
   zoom?: number,
   maxZoom?: number,
@@ -123,6 +156,8 @@ type PropsType = typeof View.props & {
   autoFocus?: string | boolean | number,
   autoFocusPointOfInterest?: { x: number, y: number },
   onModelProcessed?: () => void,
+  onModelReady?: Function,
+  modelParams?: ModelParams | ModelParams[],
   captureAudio?: boolean,
   keepAudioSession?: boolean,
   useCamera2Api?: boolean,
@@ -223,6 +258,7 @@ export default class Camera extends React.Component<PropsType, StateType> {
     onAudioConnected: PropTypes.func,
     onStatusChange: PropTypes.func,
     onModelProcessed: PropTypes.func,
+    onModelReady: PropTypes.func,
     onSubjectAreaChanged: PropTypes.func,
     trackingEnabled: PropTypes.bool,
     type: PropTypes.oneOfType([PropTypes.string, PropTypes.number]),
@@ -340,6 +376,22 @@ export default class Camera extends React.Component<PropsType, StateType> {
     CameraManager.resumePreview(this._cameraHandle);
   }
 
+  async getModelStats() {
+    if (Platform.OS === 'android') {
+      return await CameraManager.getModelStats(this._cameraHandle);
+    } else {
+      throw new Error('getModelStats is not supported on iOS');
+    }
+  }
+
+  async benchmarkModel(params: ModelParams & { threadCounts?: number[], runs?: number, warmupRuns?: number }) {
+    if (Platform.OS === 'android') {
+      return await CameraManager.benchmarkModel(params);
+    } else {
+      throw new Error('benchmarkModel is not supported on iOS');
+    }
+  }
+
   _onMountError = ({ nativeEvent }: EventCallbackArgumentsType) => {
     if (this.props.onMountError) {
       this.props.onMountError(nativeEvent);
@@ -352,6 +404,12 @@ export default class Camera extends React.Component<PropsType, StateType> {
     }
   };
 
+  _onModelReady = ({ nativeEvent }: EventCallbackArgumentsType) => {
+    if (this.props.onModelReady) {
+      this.props.onModelReady(nativeEvent);
+    }
+  };
+
   _onAudioInterrupted = () => {
     if (this.props.onAudioInterrupted) {
       this.props.onAudioInterrupted();
@@ -529,6 +587,7 @@ export default class Camera extends React.Component<PropsType, StateType> {
             onAudioInterrupted={this._onAudioInterrupted}
             onAudioConnected={this._onAudioConnected}
             onModelProcessed={this._onObjectDetected(this.props.onModelProcessed)}
+            onModelReady={this._onModelReady}
             onSubjectAreaChanged={this._onSubjectAreaChanged}
           />
           {this.renderChildren()}
@@ -577,6 +636,7 @@ const RNCamera = requireNativeComponent('RNCamera', Camera, {
     onAudioInterrupted: true,
     onAudioConnected: true,
     onLayout: true,
+    onModelReady: true,
     onMountError: true,
     onSubjectAreaChanged: true,
     renderToHardwareTextureAndroid: true,
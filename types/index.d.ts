@@ -194,7 +194,9 @@ export interface RNCameraProps {
 
   onTextRecognized?(response: { textBlocks: TrackedTextFeature[] }): void;
   // -- ANDROID ONLY PROPS
-  onModelProcessed?(response: { textBlocks: TrackedTextFeature[] }): void;
+  onModelProcessed?(response: ModelProcessedEvent): void;
+  onModelReady?(response: ModelReadyEvent): void;
+  modelParams?: ModelParams | ModelParams[];
   /** Android only */
   ratio?: string;
   /** Android only - Deprecated */
@@ -356,6 +358,130 @@ export interface TrackedTextFeature {
   components: TrackedTextFeature[];
 }
 
+interface Rect {
+  x: number;
+  y: number;
+  width: number;
+  height: number;
+}
+
+export interface ModelParams {
+  file: string;
+  label: string;
+  numResults?: number;
+  threshold?: number;
+  softmax?: boolean;
+  numThreads?: number;
+  useXNNPACK?: boolean;
+  allowFp16?: boolean;
+  mean?: number | number[];
+  std?: number | number[];
+  channelOrder?: 'RGB' | 'BGR';
+  inputRange?: [number, number];
+  inputLayout?: 'NHWC' | 'NCHW';
+  analysisSize?: 'preview' | { width: number; height: number };
+  maxFps?: number;
+  minIntervalMs?: number;
+  adaptiveFps?: boolean;
+  warmupRuns?: number;
+  everyNFrames?: number;
+  outputType?: 'classification' | 'detection';
+  labelOffset?: number;
+  /** Detection models whose outputs are not in the SSD op order */
+  outputIndices?: { boxes: number; classes: number; scores: number; count: number };
+  resultFormat?: 'maps' | 'compact';
+  smoothingWindow?: number;
+  hysteresis?: number;
+  emitOnChange?: boolean;
+  changeTolerance?: number;
+  boxChangeTolerance?: number;
+  /** Normalized to the view size */
+  roi?: Rect;
+  tiles?: { rows?: number; cols?: number; overlap?: number; batch?: boolean };
+}
+
+export interface ModelRecognition {
+  label: string;
+  confidence: number;
+  /** Detections only, normalized to the upright frame */
+  box?: { left: number; top: number; right: number; bottom: number };
+  /** Detections only, in view coordinates once the view is laid out */
+  bounds?: { origin: Point; size: Size };
+}
+
+export interface ModelFrameStats {
+  received: number;
+  processed: number;
+  overwritten: number;
+  dropped: number;
+  skipped: number;
+  unchanged: number;
+  failed: number;
+}
+
+export interface ModelProcessedEvent {
+  type: 'model';
+  /** Results of the first model, when it ran on this frame and uses the maps format */
+  data: ModelRecognition[];
+  models: Array<{
+    index: number;
+    file: string;
+    /** Maps format */
+    data?: ModelRecognition[];
+    /** Compact format: label indices, with `stride` values per result */
+    classes?: number[];
+    values?: number[];
+    stride?: number;
+  }>;
+  frameStats: ModelFrameStats;
+  target: number;
+}
+
+export interface ModelDescription {
+  file: string;
+  input: { width: number; height: number; channels: number; layout: 'NHWC' | 'NCHW'; type: string };
+  cached: boolean;
+  /** Compact format only */
+  labels?: string[];
+  tiles?: { rows: number; cols: number; batched: boolean };
+}
+
+export interface ModelReadyEvent extends ModelDescription {
+  models: ModelDescription[];
+  loadMs: number;
+  warmupMs: number;
+}
+
+interface LatencyStats {
+  count: number;
+  p50: number;
+  p95: number;
+  p99: number;
+  max: number;
+}
+
+export interface ModelStats {
+  frames: ModelFrameStats;
+  stages: {
+    queue: LatencyStats;
+    preprocess: LatencyStats;
+    inference: LatencyStats;
+    postprocess: LatencyStats;
+    dispatch: LatencyStats;
+    total: LatencyStats;
+  };
+  frameIntervalMs: number;
+}
+
+export interface ModelBenchmarkResult {
+  numThreads: number;
+  meanMs: number;
+  minMs: number;
+  p50Ms: number;
+  p95Ms: number;
+  maxMs: number;
+}
+
 interface TakePictureOptions {
   quality?: number;
   orientation?: keyof Orientation | OrientationNumber;
@@ -424,6 +550,12 @@ export class RNCamera extends Component<RNCameraProps & ViewProperties> {
 
   /** Android only */
   getSupportedRatiosAsync(): Promise<string[]>;
+  /** Android only */
+  getModelStats(): Promise<ModelStats>;
+  /** Android only */
+  benchmarkModel(
+    params: ModelParams & { threadCounts?: number[]; runs?: number; warmupRuns?: number },
+  ): Promise<ModelBenchmarkResult[]>;
 
   /** iOS only */
   isRecording(): Promise<boolean>;